@@ -0,0 +1,67 @@
+package edu.smu.smusql;
+
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+
+// Secondary index for low-cardinality columns (city, category): a RoaringBitmap of row ids per
+// distinct value. Conditions on the column become bitmaps, which Engine intersects for AND and
+// unions for OR before looking at any row.
+public class BitmapIndex extends SecondaryIndex {
+    private final SwissHashMap<Object, RoaringBitmap> entries = new SwissHashMap<>();
+
+    public BitmapIndex(String indexName, int columnIndex) {
+        super(indexName, columnIndex);
+    }
+
+    void add(Object key, int rowId) {
+        RoaringBitmap ids = entries.get(key);
+        if (ids == null) {
+            ids = new RoaringBitmap();
+            entries.put(key, ids);
+        }
+        ids.add(rowId);
+    }
+
+    void remove(Object key, int rowId) {
+        RoaringBitmap ids = entries.get(key);
+        if (ids != null) {
+            ids.remove(rowId);
+            if (ids.isEmpty()) {
+                entries.remove(key);
+            }
+        }
+    }
+
+    int count(Object key) {
+        RoaringBitmap ids = entries.get(key);
+        return ids == null ? 0 : ids.cardinality();
+    }
+
+    void forEach(Object key, IntConsumer action) {
+        RoaringBitmap ids = entries.get(key);
+        if (ids != null) {
+            ids.forEach(action);
+        }
+    }
+
+    public int distinctValues() {
+        return entries.size();
+    }
+
+    // Rows holding the value with this index key; the index's own bitmap, not to be changed
+    RoaringBitmap find(Object key) {
+        RoaringBitmap ids = entries.get(key);
+        return ids != null ? ids : new RoaringBitmap();
+    }
+
+    // Rows holding any value whose index key passes the test, one bitmap OR per distinct value
+    RoaringBitmap findAll(Predicate<Object> test) {
+        RoaringBitmap[] result = {new RoaringBitmap()};
+        entries.forEach((key, ids) -> {
+            if (test.test(key)) {
+                result[0] = result[0].or(ids);
+            }
+        });
+        return result[0];
+    }
+}
@@ -0,0 +1,109 @@
+package edu.smu.smusql;
+
+import java.util.Arrays;
+
+// Statistics of one column, gathered by Table.analyze from a sample of the index keys of its
+// values (see Table.indexKey): an estimate of the number of distinct values and an equi-depth
+// histogram, whose BUCKETS + 1 bounds split the keys in ascending order (RangeIndex.compareKeys)
+// into buckets of equal row counts. A value frequent enough to fill whole buckets shows up as a
+// run of equal bounds.
+public class ColumnStatistics {
+    static final int BUCKETS = 100;
+
+    public final double distinctValues;
+    private final Object[] bounds; // Empty if the sample was
+
+    // sample: index keys of the column in the sampled rows, sorted here; rows: the table's row count
+    ColumnStatistics(Object[] sample, int rows) {
+        Arrays.sort(sample, RangeIndex::compareKeys);
+        int n = sample.length;
+        int distinct = 0;
+        int singletons = 0; // Keys seen in exactly one sampled row
+        for (int i = 0; i < n; ) {
+            int j = i + 1;
+            while (j < n && RangeIndex.compareKeys(sample[i], sample[j]) == 0) {
+                j++;
+            }
+            distinct++;
+            if (j - i == 1) {
+                singletons++;
+            }
+            i = j;
+        }
+        if (n >= rows || n == 0) {
+            distinctValues = distinct;
+        } else {
+            // Haas and Stokes' Duj1 estimator: scale up by how many keys the sample saw only once
+            double estimate = (double) n * distinct / (n - singletons + (double) singletons * n / rows);
+            distinctValues = Math.max(distinct, Math.min(estimate, rows));
+        }
+        bounds = new Object[n == 0 ? 0 : BUCKETS + 1];
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = sample[(int) ((long) i * (n - 1) / BUCKETS)];
+        }
+    }
+
+    // Estimated fraction of rows whose key meets "key operator bound"
+    public double selectivity(String operator, Object bound) {
+        RangeIndex.Range range = new RangeIndex.Range(null, null);
+        range.restrict(operator, bound);
+        return selectivity(range);
+    }
+
+    // Estimated fraction of rows whose key lies in range
+    double selectivity(RangeIndex.Range range) {
+        if (bounds.length == 0 || range.isEmpty()) {
+            return 0;
+        }
+        if (range.lower != null && range.upper != null && RangeIndex.compareKeys(range.lower, range.upper) == 0) {
+            return equalSelectivity(range.lower);
+        }
+        double below = range.lower == null ? 0 : fractionBelow(range.lower, !range.lowerInclusive);
+        double upTo = range.upper == null ? 1 : fractionBelow(range.upper, range.upperInclusive);
+        return Math.max(0, upTo - below);
+    }
+
+    // Frequent keys by the buckets they fill, the rest by an even share of the rows
+    private double equalSelectivity(Object key) {
+        double histogram = fractionBelow(key, true) - fractionBelow(key, false);
+        boolean inRange = RangeIndex.compareKeys(key, bounds[0]) >= 0
+                && RangeIndex.compareKeys(key, bounds[BUCKETS]) <= 0;
+        return Math.max(histogram, inRange ? 1 / distinctValues : 0);
+    }
+
+    // Estimated fraction of rows whose key is below key, or at most key if inclusive; within a
+    // bucket numeric keys are taken to be spread evenly and other keys to sit halfway
+    private double fractionBelow(Object key, boolean inclusive) {
+        int low = 0;
+        int high = bounds.length; // Bounds before low are below key, bounds from high on are not
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int comparison = RangeIndex.compareKeys(bounds[middle], key);
+            if (comparison < 0 || (comparison == 0 && inclusive)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        if (low == 0) {
+            return 0;
+        }
+        if (low == bounds.length) {
+            return 1;
+        }
+        Object lower = bounds[low - 1];
+        Object upper = bounds[low];
+        double within = 0.5;
+        if (RangeIndex.compareKeys(key, lower) == 0) {
+            within = 0;
+        } else if (RangeIndex.compareKeys(key, upper) == 0) {
+            within = 1;
+        } else if (key instanceof Double && lower instanceof Double && upper instanceof Double) {
+            within = ((Double) key - (Double) lower) / ((Double) upper - (Double) lower);
+            if (Double.isNaN(within)) {
+                within = 0.5; // Infinite bounds
+            }
+        }
+        return (low - 1 + within) / BUCKETS;
+    }
+}
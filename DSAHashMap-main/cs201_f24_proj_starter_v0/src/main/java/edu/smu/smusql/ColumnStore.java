@@ -0,0 +1,709 @@
+package edu.smu.smusql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Keeps row data column by column in typed vectors, with rows addressed by position.
+// A column with a declared type gets a vector of that type and holds native values. An untyped
+// column starts as an int[] and is widened to long[], double[] or String[] the first time a value
+// does not fit (see ColumnType); its numeric vectors remember the original text of the rare values
+// that are not in canonical form ("007", "12.30"), so every value reads back exactly as written.
+// VARCHAR vectors are dictionary encoded (see DictionaryColumn) until they see too many distinct
+// values. The row map only holds one small ColumnarRow handle (a position) per row.
+// WHERE clauses are evaluated a column at a time over a selection vector of positions, as
+// primitive comparisons whenever both the column and the literal are numeric.
+class ColumnStore {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_DICTIONARY_SIZE = 1 << 16; // distinct values before a VARCHAR column stops encoding
+
+    // Bits of an operator mask, indexed by the sign of compare(value, literal) plus one
+    private static final int LESS = 1, EQUAL = 2, GREATER = 4;
+
+    private final Column[] columns;
+    private final ColumnType[] declared; // declared type of each column, null for untyped columns
+    private int capacity;
+    private int[] keys;           // primary key of the row at each position
+    private Table.Row[] handles;  // row handle at each position, null for free positions
+    private int end;              // positions handed out so far; freed ones are reused first
+    private int[] freePositions = new int[16];
+    private int freeCount;
+
+    ColumnStore(List<ColumnType> columnTypes) {
+        this.capacity = INITIAL_CAPACITY;
+        this.columns = new Column[columnTypes.size()];
+        this.declared = columnTypes.toArray(new ColumnType[0]);
+        for (int column = 0; column < columns.length; column++) {
+            columns[column] = newColumn(declared[column] != null ? declared[column] : ColumnType.INT, capacity);
+        }
+        this.keys = new int[capacity];
+        this.handles = new Table.Row[capacity];
+    }
+
+    private static Column newColumn(ColumnType type, int capacity) {
+        switch (type) {
+            case INT: return new IntColumn(capacity);
+            case BIGINT: return new LongColumn(capacity);
+            case DOUBLE: return new DoubleColumn(capacity);
+            default: return new DictionaryColumn(capacity);
+        }
+    }
+
+    // Store a new row under its primary key and return its on-heap handle
+    Table.Row insert(int key, List<Object> values) {
+        int position;
+        if (freeCount > 0) {
+            position = freePositions[--freeCount];
+        } else {
+            position = end++;
+            ensureCapacity(end);
+        }
+        keys[position] = key;
+        Table.Row handle = new ColumnarRow(this, position);
+        handles[position] = handle;
+        for (int column = 0; column < columns.length; column++) {
+            writeValue(position, column, values.get(column));
+        }
+        return handle;
+    }
+
+    // Release the position of a deleted row for reuse
+    void free(Table.Row row) {
+        int position = ((ColumnarRow) row).position;
+        for (Column column : columns) {
+            column.clear(position);
+        }
+        handles[position] = null;
+        if (freeCount == freePositions.length) {
+            freePositions = Arrays.copyOf(freePositions, freeCount * 2);
+        }
+        freePositions[freeCount++] = position;
+    }
+
+    private void ensureCapacity(int positions) {
+        if (positions <= capacity) {
+            return;
+        }
+        capacity = Math.max(capacity * 2, positions);
+        keys = Arrays.copyOf(keys, capacity);
+        handles = Arrays.copyOf(handles, capacity);
+        for (Column column : columns) {
+            column.grow(capacity);
+        }
+    }
+
+    // Native value for typed columns, the text as written for untyped ones
+    Object readValue(int position, int column) {
+        return declared[column] != null ? columns[column].getNative(position) : columns[column].get(position);
+    }
+
+    void writeValue(int position, int column, Object value) {
+        Column vector = columns[column];
+        if (declared[column] != null) {
+            if (!vector.canStore(value)) {
+                vector = replaceColumn(column, new StringColumn(capacity));
+            }
+            vector.setNative(position, value); // Already converted by Table
+            return;
+        }
+        String text = value == null ? null : value.toString();
+        if (vector.type() != ColumnType.VARCHAR) {
+            ColumnType needed = ColumnType.of(text);
+            if (needed.compareTo(vector.type()) > 0) {
+                vector = replaceColumn(column, newColumn(needed, capacity)); // Widen, once per type
+            }
+        }
+        if (!vector.canStore(text)) {
+            vector = replaceColumn(column, new StringColumn(capacity)); // Dictionary is full
+        }
+        vector.set(position, text);
+    }
+
+    // Copy the live values of a column into a new vector that takes its place, falling back to a
+    // plain StringColumn if target is a dictionary that cannot hold them all
+    private Column replaceColumn(int column, Column target) {
+        Column source = columns[column];
+        for (int position = 0; position < end; position++) {
+            if (handles[position] != null) {
+                String text = source.get(position);
+                if (!target.canStore(text)) {
+                    return replaceColumn(column, new StringColumn(capacity));
+                }
+                target.set(position, text);
+            }
+        }
+        columns[column] = target;
+        return target;
+    }
+
+    // Keys and handles of the rows meeting the conditions ({column, operator, value, connector} as
+    // parsed by Engine), in position order. literals holds each condition's value converted by
+    // Table.convertLiteral, null for untyped columns. Each OR-group of ANDed conditions is
+    // filtered on its own and the positions it keeps are merged.
+    ParallelScan.Matches filter(List<String[]> conditions, Object[] literals, List<String> columnNames) {
+        int[] selection = new int[end];
+        int selected;
+        if (!Engine.hasOr(conditions)) {
+            selected = filterGroup(conditions, literals, 0, conditions.size(), columnNames, selection);
+        } else {
+            boolean[] kept = new boolean[end];
+            int groupStart = 0;
+            for (int i = 1; i <= conditions.size(); i++) {
+                if (i == conditions.size() || Engine.startsOrGroup(conditions.get(i))) {
+                    int groupSelected = filterGroup(conditions, literals, groupStart, i, columnNames, selection);
+                    for (int j = 0; j < groupSelected; j++) {
+                        kept[selection[j]] = true;
+                    }
+                    groupStart = i;
+                }
+            }
+            selected = 0;
+            for (int position = 0; position < end; position++) {
+                if (kept[position]) {
+                    selection[selected++] = position;
+                }
+            }
+        }
+        ParallelScan.Matches matches = new ParallelScan.Matches(selected);
+        for (int i = 0; i < selected; i++) {
+            matches.add(keys[selection[i]], handles[selection[i]]);
+        }
+        return matches;
+    }
+
+    // Fill selection with the positions of the live rows meeting conditions from to to - 1;
+    // returns how many there are
+    private int filterGroup(List<String[]> conditions, Object[] literals, int from, int to,
+                            List<String> columnNames, int[] selection) {
+        int selected = 0;
+        for (int position = 0; position < end; position++) {
+            if (handles[position] != null) {
+                selection[selected++] = position;
+            }
+        }
+        for (int i = from; i < to && selected > 0; i++) {
+            String[] condition = conditions.get(i);
+            Column column = columns[columnNames.indexOf(condition[0])];
+            if (condition[1].equals("LIKE")) {
+                selected = column.filterLike(selection, selected, (String) literals[i]);
+            } else if (literals[i] instanceof Double) {
+                selected = ((NumericColumn) column).filterNumeric(selection, selected,
+                        operatorMask(condition[1]), (Double) literals[i]);
+            } else if (literals[i] != null) {
+                selected = column.filterText(selection, selected, operatorMask(condition[1]), (String) literals[i]);
+            } else {
+                selected = column.filter(selection, selected, condition[1], condition[2]);
+            }
+        }
+        return selected;
+    }
+
+    // Comparison results an operator accepts, a bit each for less, equal and greater
+    static int operatorMask(String operator) {
+        switch (operator) {
+            case "=": return EQUAL;
+            case ">": return GREATER;
+            case "<": return LESS;
+            case ">=": return GREATER | EQUAL;
+            case "<=": return LESS | EQUAL;
+            default: return 0;
+        }
+    }
+
+    // One column vector; positions past the last row handed out are never read
+    abstract static class Column {
+        abstract ColumnType type();
+
+        abstract String get(int position);
+
+        // Store text, which is known to fit type()
+        abstract void set(int position, String text);
+
+        // Boxed value of a typed column
+        abstract Object getNative(int position);
+
+        // Store the native value of a typed column
+        abstract void setNative(int position, Object value);
+
+        abstract void clear(int position);
+
+        abstract void grow(int capacity);
+
+        // False if the value would not fit without replacing the vector
+        boolean canStore(Object value) {
+            return true;
+        }
+
+        // Keep only the selected positions of an untyped column whose value satisfies
+        // "value operator literal", literal being the condition's text, and return how many are
+        // left. The literal is classified once: a number compares as a number with the values that
+        // are numbers, and as text with the rest; any other literal compares as text.
+        int filter(int[] selection, int selected, String operator, String literal) {
+            int mask = operatorMask(operator);
+            Double number = RowPredicate.parseNumber(literal);
+            if (number == null) {
+                return filterText(selection, selected, mask, literal);
+            }
+            return filterTextOrNumber(selection, selected, mask, literal, number);
+        }
+
+        // Filter by a numeric literal, as a number where the value is one and as text elsewhere
+        int filterTextOrNumber(int[] selection, int selected, int mask, String literal, double number) {
+            int kept = 0;
+            for (int i = 0; i < selected; i++) {
+                int position = selection[i];
+                String value = get(position);
+                if (value != null
+                        && (mask >> (Integer.signum(RowPredicate.compareTextOrNumber(value, literal, number)) + 1) & 1) != 0) {
+                    selection[kept++] = position;
+                }
+            }
+            return kept;
+        }
+
+        // Keep only the selected positions whose unquoted value matches a LIKE pattern, the way
+        // Engine's row evaluation does
+        int filterLike(int[] selection, int selected, String pattern) {
+            int kept = 0;
+            for (int i = 0; i < selected; i++) {
+                String value = get(selection[i]);
+                if (value != null && Engine.like(ColumnType.unquote(value), pattern)) {
+                    selection[kept++] = selection[i];
+                }
+            }
+            return kept;
+        }
+
+        // Filter by plain string comparison: a typed VARCHAR column with an unquoted literal, or an
+        // untyped column with a literal that is not a number
+        int filterText(int[] selection, int selected, int mask, String literal) {
+            int kept = 0;
+            for (int i = 0; i < selected; i++) {
+                int position = selection[i];
+                String value = get(position);
+                if (value != null && (mask >> (Integer.signum(value.compareTo(literal)) + 1) & 1) != 0) {
+                    selection[kept++] = position;
+                }
+            }
+            return kept;
+        }
+    }
+
+    // Vector of numbers that also keeps the exact text of values not in canonical form
+    abstract static class NumericColumn extends Column {
+        String[] spelling; // allocated on the first non-canonical value
+
+        void setSpelling(int position, String text, boolean canonical) {
+            if (!canonical) {
+                if (spelling == null) {
+                    spelling = new String[capacity()];
+                }
+                spelling[position] = text;
+            } else if (spelling != null) {
+                spelling[position] = null;
+            }
+        }
+
+        String spelling(int position) {
+            return spelling == null ? null : spelling[position];
+        }
+
+        void growSpelling(int capacity) {
+            if (spelling != null) {
+                spelling = Arrays.copyOf(spelling, capacity);
+            }
+        }
+
+        abstract int capacity();
+
+        // Every stored value is numeric, so a numeric literal turns the filter into a loop of
+        // primitive comparisons on the vector
+        @Override
+        int filterTextOrNumber(int[] selection, int selected, int mask, String literal, double number) {
+            return filterNumeric(selection, selected, mask, number);
+        }
+
+        abstract int filterNumeric(int[] selection, int selected, int mask, double literal);
+    }
+
+    // True if text is how Long.toString would write its value: no '+', no leading zeros, no "-0"
+    private static boolean isCanonicalInteger(String text) {
+        int start = text.charAt(0) == '-' ? 1 : 0;
+        if (text.charAt(0) == '+') {
+            return false;
+        }
+        if (text.charAt(start) == '0') {
+            return text.length() == 1;
+        }
+        return true;
+    }
+
+    static final class IntColumn extends NumericColumn {
+        private int[] values;
+
+        IntColumn(int capacity) {
+            values = new int[capacity];
+        }
+
+        ColumnType type() {
+            return ColumnType.INT;
+        }
+
+        String get(int position) {
+            String text = spelling(position);
+            return text != null ? text : Integer.toString(values[position]);
+        }
+
+        void set(int position, String text) {
+            values[position] = Integer.parseInt(text);
+            setSpelling(position, text, isCanonicalInteger(text));
+        }
+
+        Object getNative(int position) {
+            return values[position];
+        }
+
+        void setNative(int position, Object value) {
+            values[position] = (Integer) value;
+        }
+
+        void clear(int position) {
+            values[position] = 0;
+            setSpelling(position, null, true);
+        }
+
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+            growSpelling(capacity);
+        }
+
+        int capacity() {
+            return values.length;
+        }
+
+        int filterNumeric(int[] selection, int selected, int mask, double literal) {
+            int[] vector = values;
+            int kept = 0;
+            for (int i = 0; i < selected; i++) {
+                int position = selection[i];
+                if ((mask >> (Integer.signum(Double.compare(vector[position], literal)) + 1) & 1) != 0) {
+                    selection[kept++] = position;
+                }
+            }
+            return kept;
+        }
+    }
+
+    static final class LongColumn extends NumericColumn {
+        private long[] values;
+
+        LongColumn(int capacity) {
+            values = new long[capacity];
+        }
+
+        ColumnType type() {
+            return ColumnType.BIGINT;
+        }
+
+        String get(int position) {
+            String text = spelling(position);
+            return text != null ? text : Long.toString(values[position]);
+        }
+
+        void set(int position, String text) {
+            values[position] = Long.parseLong(text);
+            setSpelling(position, text, isCanonicalInteger(text));
+        }
+
+        Object getNative(int position) {
+            return values[position];
+        }
+
+        void setNative(int position, Object value) {
+            values[position] = (Long) value;
+        }
+
+        void clear(int position) {
+            values[position] = 0;
+            setSpelling(position, null, true);
+        }
+
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+            growSpelling(capacity);
+        }
+
+        int capacity() {
+            return values.length;
+        }
+
+        int filterNumeric(int[] selection, int selected, int mask, double literal) {
+            long[] vector = values;
+            int kept = 0;
+            for (int i = 0; i < selected; i++) {
+                int position = selection[i];
+                if ((mask >> (Integer.signum(Double.compare(vector[position], literal)) + 1) & 1) != 0) {
+                    selection[kept++] = position;
+                }
+            }
+            return kept;
+        }
+    }
+
+    static final class DoubleColumn extends NumericColumn {
+        private double[] values;
+
+        DoubleColumn(int capacity) {
+            values = new double[capacity];
+        }
+
+        ColumnType type() {
+            return ColumnType.DOUBLE;
+        }
+
+        String get(int position) {
+            String text = spelling(position);
+            return text != null ? text : Double.toString(values[position]);
+        }
+
+        void set(int position, String text) {
+            double value = Double.parseDouble(text);
+            values[position] = value;
+            setSpelling(position, text, Double.toString(value).equals(text));
+        }
+
+        Object getNative(int position) {
+            return values[position];
+        }
+
+        void setNative(int position, Object value) {
+            values[position] = (Double) value;
+        }
+
+        void clear(int position) {
+            values[position] = 0;
+            setSpelling(position, null, true);
+        }
+
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+            growSpelling(capacity);
+        }
+
+        int capacity() {
+            return values.length;
+        }
+
+        int filterNumeric(int[] selection, int selected, int mask, double literal) {
+            double[] vector = values;
+            int kept = 0;
+            for (int i = 0; i < selected; i++) {
+                int position = selection[i];
+                if ((mask >> (Integer.signum(Double.compare(vector[position], literal)) + 1) & 1) != 0) {
+                    selection[kept++] = position;
+                }
+            }
+            return kept;
+        }
+    }
+
+    static final class StringColumn extends Column {
+        private String[] values;
+
+        StringColumn(int capacity) {
+            values = new String[capacity];
+        }
+
+        ColumnType type() {
+            return ColumnType.VARCHAR;
+        }
+
+        String get(int position) {
+            return values[position];
+        }
+
+        void set(int position, String text) {
+            values[position] = text;
+        }
+
+        Object getNative(int position) {
+            return values[position];
+        }
+
+        void setNative(int position, Object value) {
+            values[position] = (String) value;
+        }
+
+        void clear(int position) {
+            values[position] = null;
+        }
+
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        int filterText(int[] selection, int selected, int mask, String literal) {
+            String[] vector = values;
+            int kept = 0;
+            for (int i = 0; i < selected; i++) {
+                int position = selection[i];
+                String value = vector[position];
+                if (value != null && (mask >> (Integer.signum(value.compareTo(literal)) + 1) & 1) != 0) {
+                    selection[kept++] = position;
+                }
+            }
+            return kept;
+        }
+    }
+
+    // VARCHAR vector of int codes into a dictionary of the column's distinct values, so a value
+    // repeated on millions of rows is stored once. Predicates are evaluated once per distinct value
+    // and then applied to the codes; typed equality becomes an int compare against one code.
+    // Codes are never reclaimed, so a column that keeps seeing new values is replaced by a plain
+    // StringColumn once the dictionary is full.
+    static final class DictionaryColumn extends Column {
+        private static final int NULL_CODE = -1;
+
+        private int[] codes;
+        private String[] dictionary = new String[16]; // value of each code
+        private int dictionarySize;
+        private final HashMap<String, Integer> lookup = new HashMap<>(); // code of each value
+
+        DictionaryColumn(int capacity) {
+            codes = new int[capacity];
+        }
+
+        ColumnType type() {
+            return ColumnType.VARCHAR;
+        }
+
+        String get(int position) {
+            int code = codes[position];
+            return code == NULL_CODE ? null : dictionary[code];
+        }
+
+        void set(int position, String text) {
+            codes[position] = text == null ? NULL_CODE : encode(text);
+        }
+
+        Object getNative(int position) {
+            return get(position);
+        }
+
+        void setNative(int position, Object value) {
+            set(position, (String) value);
+        }
+
+        void clear(int position) {
+            codes[position] = NULL_CODE;
+        }
+
+        void grow(int capacity) {
+            codes = Arrays.copyOf(codes, capacity);
+        }
+
+        @Override
+        boolean canStore(Object value) {
+            return value == null || dictionarySize < MAX_DICTIONARY_SIZE || lookup.get(value.toString()) != null;
+        }
+
+        private int encode(String text) {
+            Integer code = lookup.get(text);
+            if (code == null) {
+                if (dictionarySize == dictionary.length) {
+                    dictionary = Arrays.copyOf(dictionary, dictionarySize * 2);
+                }
+                code = dictionarySize++;
+                dictionary[code] = text;
+                lookup.put(text, code);
+            }
+            return code;
+        }
+
+        @Override
+        int filterTextOrNumber(int[] selection, int selected, int mask, String literal, double number) {
+            boolean[] matching = new boolean[dictionarySize];
+            for (int code = 0; code < dictionarySize; code++) {
+                int comparison = RowPredicate.compareTextOrNumber(dictionary[code], literal, number);
+                matching[code] = (mask >> (Integer.signum(comparison) + 1) & 1) != 0;
+            }
+            return filterCodes(selection, selected, matching);
+        }
+
+        @Override
+        int filterText(int[] selection, int selected, int mask, String literal) {
+            if (mask == EQUAL) {
+                Integer code = lookup.get(literal);
+                if (code == null) {
+                    return 0; // No row holds the literal
+                }
+                int[] vector = codes;
+                int target = code;
+                int kept = 0;
+                for (int i = 0; i < selected; i++) {
+                    int position = selection[i];
+                    if (vector[position] == target) {
+                        selection[kept++] = position;
+                    }
+                }
+                return kept;
+            }
+            boolean[] matching = new boolean[dictionarySize];
+            for (int code = 0; code < dictionarySize; code++) {
+                matching[code] = (mask >> (Integer.signum(dictionary[code].compareTo(literal)) + 1) & 1) != 0;
+            }
+            return filterCodes(selection, selected, matching);
+        }
+
+        // Keep the selected positions whose code is marked in matching
+        private int filterCodes(int[] selection, int selected, boolean[] matching) {
+            int[] vector = codes;
+            int kept = 0;
+            for (int i = 0; i < selected; i++) {
+                int position = selection[i];
+                int code = vector[position];
+                if (code != NULL_CODE && matching[code]) {
+                    selection[kept++] = position;
+                }
+            }
+            return kept;
+        }
+    }
+
+    // Row handle whose values are read from the column vectors on every access
+    static final class ColumnarRow extends Table.Row {
+        private final ColumnStore store;
+        final int position;
+
+        ColumnarRow(ColumnStore store, int position) {
+            super(null);
+            this.store = store;
+            this.position = position;
+        }
+
+        @Override
+        public ArrayList<Object> getValues() {
+            ArrayList<Object> result = new ArrayList<>(store.columns.length);
+            for (int column = 0; column < store.columns.length; column++) {
+                result.add(store.readValue(position, column));
+            }
+            return result;
+        }
+
+        @Override
+        public Object getValue(int index) {
+            return store.readValue(position, index);
+        }
+
+        @Override
+        public void setValue(int index, Object value) {
+            store.writeValue(position, index, value);
+        }
+
+        @Override
+        public String toString() {
+            return getValues().toString();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package edu.smu.smusql;
+
+// Declared type of a column (CREATE TABLE users (id INT, name VARCHAR, ...)), also used as the
+// type of a column vector in a COLUMNAR table. Values of a typed column are converted once when
+// written and kept in native form: Integer, Long, Double or String.
+// Untyped columns of a COLUMNAR table start as INT vectors and are widened, narrowest to widest,
+// to the first type that fits every value stored in them.
+public enum ColumnType {
+    INT,     // int[]
+    BIGINT,  // long[]
+    DOUBLE,  // double[]
+    VARCHAR; // String[]
+
+    // Type named in a column definition, or null if unknown. The parser accepts and drops a
+    // length, as in VARCHAR(20).
+    static ColumnType parse(String name) {
+        String upper = name.toUpperCase();
+        switch (upper) {
+            case "INT":
+            case "INTEGER":
+                return INT;
+            case "BIGINT":
+                return BIGINT;
+            case "DOUBLE":
+                return DOUBLE;
+            case "VARCHAR":
+                return VARCHAR;
+            default:
+                return null;
+        }
+    }
+
+    // Native form of a value written to a column of this type.
+    // Text is parsed here, once; VARCHAR values lose the quotes of a SQL string literal.
+    // Throws IllegalArgumentException (NumberFormatException for bad numbers) if the value does not fit.
+    Object convert(Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException("null");
+        }
+        switch (this) {
+            case INT:
+                return value instanceof Integer ? value : Integer.valueOf(value.toString());
+            case BIGINT:
+                return value instanceof Long ? value : Long.valueOf(value.toString());
+            case DOUBLE:
+                return value instanceof Double ? value : Double.valueOf(value.toString());
+            default:
+                return value instanceof String ? unquote((String) value) : value.toString();
+        }
+    }
+
+    // WHERE literal converted for comparison against this type's values: a Double for the numeric
+    // types (values are compared as doubles, like untyped numeric text), the unquoted text for VARCHAR
+    Object literal(String text) {
+        return this == VARCHAR ? unquote(text) : Double.valueOf(text);
+    }
+
+    // Text of a SQL string literal without its quotes; other text as it is
+    static String unquote(String text) {
+        if (text.length() >= 2 && text.charAt(0) == '\'' && text.charAt(text.length() - 1) == '\'') {
+            return text.substring(1, text.length() - 1);
+        }
+        return text;
+    }
+
+    // Narrowest type that can hold the text. Anything Double.parseDouble accepts is numeric,
+    // matching the numeric comparisons of WHERE clauses.
+    static ColumnType of(String text) {
+        if (text == null) {
+            return VARCHAR;
+        }
+        if (isInteger(text)) {
+            try {
+                long value = Long.parseLong(text);
+                return value == (int) value ? INT : BIGINT;
+            } catch (NumberFormatException e) {
+                // Too many digits for a long, still numeric as a double
+            }
+        }
+        try {
+            Double.parseDouble(text);
+            return DOUBLE;
+        } catch (NumberFormatException e) {
+            return VARCHAR;
+        }
+    }
+
+    // Optional sign followed by ASCII digits only
+    static boolean isInteger(String text) {
+        int start = !text.isEmpty() && (text.charAt(0) == '-' || text.charAt(0) == '+') ? 1 : 0;
+        if (start == text.length()) {
+            return false;
+        }
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
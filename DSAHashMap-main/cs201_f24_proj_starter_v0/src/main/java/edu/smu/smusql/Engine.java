@@ -1,100 +1,198 @@
 package edu.smu.smusql;
 
 import java.util.*;
+import java.util.function.Supplier;
 
 public class Engine {
+    // Tables with at least this many rows are filtered in parallel on the common ForkJoinPool
+    private static final int PARALLEL_SCAN_THRESHOLD = 50_000;
+    // Costs the planner weighs access paths by, in rows of a full scan. Rows found through an
+    // index are fetched one by one from the row map, and zone-map blocks are read id by id; ids
+    // combined in bitmaps cost a fraction of a row; COLUMNAR scans compare whole column vectors.
+    private static final double INDEX_ROW_COST = 2;
+    private static final double ZONE_ROW_COST = 1.5;
+    private static final double BITMAP_ID_COST = 0.05;
+    private static final double COLUMNAR_ROW_COST = 0.25;
+    // Fraction of rows a LIKE condition is taken to match, which no statistics estimate
+    private static final double LIKE_SELECTIVITY = 0.005;
+    private static final int STATEMENT_CACHE_SIZE = 256; // Prepared statements kept by prepare
+
     // stores the contents of database tables in-memory using a HashMap for quick lookup
     private HashMap<String, Table> tables = new HashMap<>();
+    private final StatementCache statementCache = new StatementCache(STATEMENT_CACHE_SIZE);
+    private int schemaVersion; // Bumped whenever a table is created or indexed
 
     public String executeSQL(String query) {
-        String[] tokens = query.trim().split("\\s+");
-        String command = tokens[0].toUpperCase();
+        Statement statement;
+        try {
+            statement = Parser.parse(query);
+        } catch (IllegalArgumentException e) {
+            return "ERROR: " + e.getMessage();
+        }
+        if (statement.parameters > 0) {
+            return "ERROR: Values for ? placeholders are bound through prepare";
+        }
+        return execute(statement);
+    }
 
-        switch (command) {
-            case "CREATE":
-                return create(tokens);
-            case "INSERT":
-                return insert(tokens);
-            case "SELECT":
-                return select(tokens);
-            case "UPDATE":
-                return update(tokens);
-            case "DELETE":
-                return delete(tokens);
-            default:
-                return "ERROR: Unknown command";
+    // Statement parsed once, or taken from the cache of recently prepared ones by its normalized
+    // text, to be run with values bound to its ? placeholders. Throws IllegalArgumentException on
+    // invalid syntax.
+    public PreparedStatement prepare(String sql) {
+        String normalized = Parser.normalize(sql);
+        PreparedStatement prepared = statementCache.get(normalized);
+        if (prepared == null) {
+            prepared = new PreparedStatement(this, Parser.parse(sql));
+            statementCache.put(normalized, prepared);
         }
+        return prepared;
     }
 
-    // INSERT command implementation
-    public String insert(String[] tokens) {
-        // "INSERT INTO users VALUES (%d, '%s', %d, '%s')" | INTO token in idx = 1
-        final int INTO_CLAUSE = 1;
-        if (!tokens[INTO_CLAUSE].toUpperCase().equals("INTO")) {
-            return "ERROR: Invalid INSERT INTO syntax";
+    // Run a statement from Parser.parse. Its WHERE conditions may be reordered.
+    public String execute(Statement statement) {
+        if (statement instanceof Statement.Select) {
+            return select((Statement.Select) statement);
+        } else if (statement instanceof Statement.Insert) {
+            return insert((Statement.Insert) statement);
+        } else if (statement instanceof Statement.Update) {
+            return update((Statement.Update) statement);
+        } else if (statement instanceof Statement.Delete) {
+            return delete((Statement.Delete) statement);
+        } else if (statement instanceof Statement.CreateTable) {
+            return create((Statement.CreateTable) statement);
+        } else if (statement instanceof Statement.CreateIndex) {
+            return createIndex((Statement.CreateIndex) statement);
+        } else if (statement instanceof Statement.SetStats) {
+            return setStats((Statement.SetStats) statement);
+        } else if (statement instanceof Statement.ShowStats) {
+            return showStats((Statement.ShowStats) statement);
+        } else if (statement instanceof Statement.Analyze) {
+            return analyze((Statement.Analyze) statement);
         }
+        return "ERROR: Unknown command";
+    }
 
-        // "INSERT INTO users | users (tableName) token in idx = 2
-        String tableName = tokens[2];
-        Table table = tables.get(tableName);
+    // Run a bound statement of a PreparedStatement on its table, looked up in advance, or null if
+    // there was no such table
+    String execute(Statement statement, Table table) {
+        if (table == null) {
+            return execute(statement);
+        } else if (statement instanceof Statement.Select) {
+            return select(table, (Statement.Select) statement);
+        } else if (statement instanceof Statement.Insert) {
+            return insert(table, ((Statement.Insert) statement).values);
+        } else if (statement instanceof Statement.Update) {
+            Statement.Update update = (Statement.Update) statement;
+            return update(table, update.column, update.value, update.where);
+        } else if (statement instanceof Statement.Delete) {
+            return delete(table, ((Statement.Delete) statement).where);
+        }
+        return execute(statement);
+    }
+
+    int schemaVersion() {
+        return schemaVersion;
+    }
+
+    // Rows of a SELECT, read as the caller asks for them (see ResultSet). Throws
+    // IllegalArgumentException, with the message executeSQL would return, on any error.
+    public ResultSet query(String sql) {
+        Statement statement;
+        try {
+            statement = Parser.parse(sql);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("ERROR: " + e.getMessage());
+        }
+        if (!(statement instanceof Statement.Select)) {
+            throw new IllegalArgumentException("ERROR: Only a SELECT returns rows");
+        }
+        if (statement.parameters > 0) {
+            throw new IllegalArgumentException("ERROR: Values for ? placeholders are bound through prepare");
+        }
+        return query((Statement.Select) statement, null);
+    }
 
+    // Rows of a SELECT on its table, looked up in advance by a PreparedStatement, or null to look
+    // it up now
+    ResultSet query(Statement.Select statement, Table table) {
         if (table == null) {
-            return "Error: no such table: " + tableName;
+            table = tables.get(statement.tableName);
         }
+        if (table == null) {
+            throw new IllegalArgumentException("Error: no such table: " + statement.tableName);
+        }
+        return query(table, statement, false);
+    }
 
-        String valueList = queryBetweenParentheses(tokens, 4); // Get values list between parentheses
-        List<String> values = Arrays.asList(valueList.split(","));
-        values.replaceAll(String::trim);
+    // INSERT command implementation
+    public String insert(Statement.Insert statement) {
+        Table table = tables.get(statement.tableName);
+        if (table == null) {
+            return "Error: no such table: " + statement.tableName;
+        }
+        return insert(table, statement.values);
+    }
 
+    private String insert(Table table, List<String> values) {
+        String tableName = table.tableName;
         List<String> columns = table.getColumnNames();
         if (values.size() != columns.size()) {
             return "ERROR: Column count doesn't match value count";
         }
 
         ArrayList<Object> rowValues = new ArrayList<>(values);
-        table.insertRow(rowValues);
+        try {
+            table.insertRow(rowValues);  // Typed columns are converted and validated here
+        } catch (IllegalArgumentException e) {
+            return "ERROR: " + e.getMessage();
+        }
 
         return "Row inserted into " + tableName;
     }
 
     // DELETE command implementation
-    public String delete(String[] tokens) {
-        if (!tokens[1].toUpperCase().equals("FROM")) {
-            return "ERROR: Invalid DELETE syntax";
-        }
-
-        // "DELETE FROM users WHERE id = " | users idx = 2 (tableName)
-        String tableName = tokens[2];
-        Table table = tables.get(tableName);
-
+    public String delete(Statement.Delete statement) {
+        Table table = tables.get(statement.tableName);
         if (table == null) {
-            return "Error: no such table: " + tableName;
+            return "Error: no such table: " + statement.tableName;
         }
+        return delete(table, statement.where);
+    }
 
-        // Parse WHERE clause conditions
-        List<String[]> whereClauseConditions = new ArrayList<>();
-        // delete from users WHERE | where idx = 3
-        final int WHERE_CLAUSE_DELETE = 3;
-        if (tokens.length > WHERE_CLAUSE_DELETE && tokens[WHERE_CLAUSE_DELETE].toUpperCase().equals("WHERE")) {
-            for (int i = WHERE_CLAUSE_DELETE + 1; i < tokens.length; i++) { // read after where clause
-                if (isOperator(tokens[i])) {
-                    String column = tokens[i - 1];
-                    String operator = tokens[i];
-                    String value = tokens[i + 1];
-                    whereClauseConditions.add(new String[]{column, operator, value});
-                    i++; // Skip the value token
-                }
-            }
+    private String delete(Table table, List<String[]> whereClauseConditions) {
+        String tableName = table.tableName;
+        String unknownColumn = unknownColumn(table, whereClauseConditions);
+        if (unknownColumn != null) {
+            return "Error: no such column: " + unknownColumn;
+        }
+        Object[] literals;
+        try {
+            literals = convertLiterals(table, whereClauseConditions);
+        } catch (IllegalArgumentException e) {
+            return "ERROR: " + e.getMessage();
         }
+        orderConditions(table, whereClauseConditions, literals);
+        RowPredicate where = RowPredicate.compile(table, whereClauseConditions, literals);
 
         int rowsAffected = 0;
-        Iterator<edu.smu.smusql.HashMap.Entry<Integer, Table.Row>> iterator = table.rows.entrySet().iterator();
-        while (iterator.hasNext()) {
-            edu.smu.smusql.HashMap.Entry<Integer, Table.Row> entry = iterator.next();
-            int primaryKey = entry.getKey();
-            if (evaluateWhereConditions(entry.getValue(), whereClauseConditions, table.getColumnNames())) {
-                table.deleteRow(primaryKey);  // Use deleteRow method
-                rowsAffected++;
+        ParallelScan.Matches matches = plannedMatches(table, whereClauseConditions, literals, where);
+        if (matches == null && (table.isColumnar() || table.rows.size() >= PARALLEL_SCAN_THRESHOLD)) {
+            matches = scanMatches(table, whereClauseConditions, literals, where);
+        }
+        if (matches != null) {
+            // Matched up front, then delete the matches
+            for (int i = 0; i < matches.size; i++) {
+                table.deleteRow(matches.keys[i]);
+            }
+            rowsAffected = matches.size;
+        } else {
+            // Unindexed scan of a small row map: delete in place without gathering the matches
+            RowMap.Cursor cursor = table.rows.cursor();
+            while (cursor.next()) {
+                if (where.test(cursor.row())) {
+                    table.deleteRow(cursor);  // Remove through the cursor so the scan stays valid
+                    rowsAffected++;
+                }
             }
         }
 
@@ -102,153 +200,813 @@ public class Engine {
     }
 
     // SELECT command implementation
-    public String select(String[] tokens) {
-        if (!tokens[1].equals("*") || !tokens[2].toUpperCase().equals("FROM")) {
-            return "ERROR: Invalid SELECT syntax";
+    public String select(Statement.Select statement) {
+        Table table = tables.get(statement.tableName);
+        if (table == null) {
+            return "Error: no such table: " + statement.tableName;
         }
+        return select(table, statement);
+    }
 
-        // SELECT * FROM tableName | tableName idx = 3
-        String tableName = tokens[3];
-        Table table = tables.get(tableName);
+    private String select(Table table, Statement.Select statement) {
+        ResultSet rows;
+        try {
+            rows = query(table, statement, true);
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        StringBuilder result = new StringBuilder();
+        rows.writeTo(result);
+        return result.toString();
+    }
 
-        if (table == null) {
-            return "Error: no such table: " + tableName;
+    // Rows of the SELECT, at most its LIMIT of them. Rows found through an index and those of
+    // COLUMNAR tables are gathered up front; a scan of the row map is filtered batch by batch as
+    // the result is read, so a LIMIT stops it early. Only a large table whose rows will all be read
+    // (readAll, and no LIMIT) is filtered in parallel up front. Aggregates are computed over the
+    // matching rows before the result is returned (see aggregate).
+    // Throws IllegalArgumentException with the error message for the query.
+    private ResultSet query(Table table, Statement.Select statement, boolean readAll) {
+        if (statement.joinTable != null) {
+            return join(table, statement, readAll);
+        }
+        List<String[]> whereClauseConditions = statement.where;
+        int limit = statement.limit;
+        String unknownColumn = unknownColumn(table, statement);
+        if (unknownColumn != null) {
+            throw new IllegalArgumentException("Error: no such column: " + unknownColumn);
+        }
+        Object[] literals;
+        HashAggregate aggregate = null;
+        try {
+            literals = convertLiterals(table, whereClauseConditions);
+            if (statement.items != null || !statement.groupBy.isEmpty()) {
+                aggregate = new HashAggregate(table, statement.items, statement.groupBy);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("ERROR: " + e.getMessage());
         }
+        List<String> columns = aggregate != null ? aggregate.columnNames() : table.getColumnNames();
+        if (limit == 0) {
+            return new ResultSet(columns, new ParallelScan.Matches(), 0);
+        }
+        orderConditions(table, whereClauseConditions, literals);
+        RowPredicate where = RowPredicate.compile(table, whereClauseConditions, literals);
 
-        StringBuilder result = new StringBuilder();
-        result.append(String.join("\t", table.getColumnNames())).append("\n");
-
-        // Parse WHERE clause conditions
-        List<String[]> whereClauseConditions = new ArrayList<>();
-        // Select * from tableName where | where idx = 4
-        final int WHERE_CLAUSE_SELECT = 4;
-        if (tokens.length > WHERE_CLAUSE_SELECT && tokens[WHERE_CLAUSE_SELECT].toUpperCase().equals("WHERE")) {
-            for (int i = WHERE_CLAUSE_SELECT + 1; i < tokens.length; i++) {
-                if (isOperator(tokens[i])) {
-                    String column = tokens[i - 1];
-                    String operator = tokens[i];
-                    String value = tokens[i + 1];
-                    whereClauseConditions.add(new String[]{column, operator, value});
-                    i++;
-                }
+        // Both row map paths list rows in the map's forEach order, so the output does not depend on
+        // which one ran; COLUMNAR tables list them in position order. Rows found through an index
+        // or the zone map are listed in the index's or in row id order.
+        ParallelScan.Matches matches = plannedMatches(table, whereClauseConditions, literals, where);
+        if (aggregate != null) {
+            return new ResultSet(columns, aggregate(table, aggregate, matches, whereClauseConditions, literals, where), limit);
+        }
+        if (matches == null && (table.isColumnar()
+                || (readAll && limit < 0 && table.rows.size() >= PARALLEL_SCAN_THRESHOLD))) {
+            matches = scanMatches(table, whereClauseConditions, literals, where);
+        }
+        return matches != null
+                ? new ResultSet(columns, matches, limit)
+                : new ResultSet(columns, table.rows.spliterator(), where, limit);
+    }
+
+    // Groups of an aggregate query, one row each: the matches of the planned access path, or
+    // else of a scan, are added to the aggregate as they are found. Large row maps are aggregated
+    // in parallel, each part into its own partial aggregate.
+    private ParallelScan.Matches aggregate(Table table, HashAggregate aggregate, ParallelScan.Matches planned,
+                                           List<String[]> conditions, Object[] literals, RowPredicate where) {
+        if (planned != null) {
+            aggregate.add(planned);
+        } else if (table.isColumnar()) {
+            aggregate.add(scanMatches(table, conditions, literals, where));
+        } else if (table.rows.size() >= PARALLEL_SCAN_THRESHOLD) {
+            aggregate.addParallel(table.rows, where);
+        } else {
+            RowBatch.scan(table.rows, where, aggregate::add);
+        }
+        return result(aggregate);
+    }
+
+    private static ParallelScan.Matches result(HashAggregate aggregate) {
+        try {
+            return aggregate.result();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("ERROR: " + e.getMessage());
+        }
+    }
+
+    // Rows of a SELECT with a JOIN. Conditions of a WHERE clause without OR that name one table's
+    // columns are pushed down to that table's own access path, except on the right table of a
+    // LEFT JOIN, whose conditions must also see the nulls of unmatched rows; the rest are tested
+    // on the joined rows. When a join column has an index, its table's primary key or a secondary
+    // index, and the other table's rows meeting their conditions are estimated to be few enough
+    // that looking each up in it costs less than scanning its table, they do so (index nested-loop
+    // join); otherwise the side estimated to have fewer rows meeting its conditions is loaded into a
+    // hash table and the other streamed past it. Joined rows are listed in the order of the streamed
+    // table, and a LIMIT without aggregates stops the join once it is reached.
+    private ResultSet join(Table left, Statement.Select statement, boolean readAll) {
+        Table right = tables.get(statement.joinTable);
+        if (right == null) {
+            throw new IllegalArgumentException("Error: no such table: " + statement.joinTable);
+        }
+        if (right == left) {
+            throw new IllegalArgumentException("ERROR: A table cannot be joined to itself");
+        }
+        String leftOn = qualify(left, right, statement.joinOn[0]);
+        String rightOn = qualify(left, right, statement.joinOn[1]);
+        if (leftOn.startsWith(right.tableName + ".")) {
+            String swap = leftOn;
+            leftOn = rightOn;
+            rightOn = swap;
+        }
+        if (!leftOn.startsWith(left.tableName + ".") || !rightOn.startsWith(right.tableName + ".")) {
+            throw new IllegalArgumentException("ERROR: JOIN ON must equate a column of each table");
+        }
+        Join join = new Join(left, right, left.getColumnNames().indexOf(column(left, leftOn)),
+                right.getColumnNames().indexOf(column(right, rightOn)), statement.leftJoin);
+
+        List<String[]> items = null;
+        if (statement.items != null) {
+            items = new ArrayList<>(statement.items.size());
+            for (String[] item : statement.items) {
+                items.add(new String[]{item[0], item[1].equals("*") ? "*" : qualify(left, right, item[1])});
+            }
+        }
+        List<String> groupBy = new ArrayList<>(statement.groupBy.size());
+        for (String column : statement.groupBy) {
+            groupBy.add(qualify(left, right, column));
+        }
+        List<String[]> leftWhere = new ArrayList<>();
+        List<String[]> rightWhere = new ArrayList<>();
+        List<String[]> joinedWhere = new ArrayList<>();
+        boolean pushDown = !hasOr(statement.where);
+        for (String[] condition : statement.where) {
+            String column = qualify(left, right, condition[0]);
+            if (pushDown && column.startsWith(left.tableName + ".")) {
+                leftWhere.add(new String[]{column(left, column), condition[1], condition[2], condition[3]});
+            } else if (pushDown && !statement.leftJoin) {
+                rightWhere.add(new String[]{column(right, column), condition[1], condition[2], condition[3]});
+            } else {
+                joinedWhere.add(new String[]{column, condition[1], condition[2], condition[3]});
             }
         }
 
-        // Iterate over rows in the custom HashMap and filter based on WHERE conditions
-        for (edu.smu.smusql.HashMap.Entry<Integer, Table.Row> entry : table.rows.entrySet()) {
-            Table.Row row = entry.getValue();
-            if (evaluateWhereConditions(row, whereClauseConditions, table.getColumnNames())) {
-                for (Object value : row.getValues()) {
-                    result.append(value.toString()).append("\t");
-                }
-                result.append("\n");
+        Object[] literals;
+        HashAggregate aggregate = null;
+        try {
+            literals = convertLiterals(join.schema, joinedWhere);
+            if (items != null || !groupBy.isEmpty()) {
+                aggregate = new HashAggregate(join.schema, items, groupBy);
             }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("ERROR: " + e.getMessage());
         }
-        return result.toString();
+        List<String> columns = aggregate != null ? aggregate.columnNames() : join.schema.getColumnNames();
+        int limit = statement.limit;
+        if (limit == 0) {
+            return new ResultSet(columns, new ParallelScan.Matches(), 0);
+        }
+        RowPredicate where = RowPredicate.compile(join.schema, joinedWhere, literals);
+        ParallelScan.Matches joined = new ParallelScan.Matches();
+        HashAggregate groups = aggregate;
+        Join.Output out = row -> {
+            if (!where.test(row)) {
+                return true;
+            }
+            if (groups != null) {
+                groups.add(row);
+                return true;
+            }
+            joined.add(joined.size, row);
+            return limit < 0 || joined.size < limit;
+        };
+
+        boolean readStreamed = readAll || aggregate != null;
+        double leftRows = estimatedRows(left, leftWhere);
+        double rightRows = estimatedRows(right, rightWhere);
+        // Rows of a full scan the index lookups save on each side, as in plannedMatches
+        double rightSaving = right.getPrimaryKeyColumn() == join.rightColumn || right.getIndex(join.rightColumn) != null
+                ? right.rows.size() - leftRows * INDEX_ROW_COST : 0;
+        double leftSaving = !statement.leftJoin
+                && (left.getPrimaryKeyColumn() == join.leftColumn || left.getIndex(join.leftColumn) != null)
+                ? left.rows.size() - rightRows * INDEX_ROW_COST : 0;
+        if (rightSaving > 0 || leftSaving > 0) {
+            boolean innerRight = rightSaving >= leftSaving;
+            Table inner = innerRight ? right : left;
+            int innerColumn = innerRight ? join.rightColumn : join.leftColumn;
+            SecondaryIndex index = inner.getPrimaryKeyColumn() == innerColumn ? null : inner.getIndex(innerColumn);
+            RowPredicate innerWhere = compile(inner, innerRight ? rightWhere : leftWhere);
+            ResultSet outer = innerRight ? side(left, leftWhere, readStreamed) : side(right, rightWhere, readStreamed);
+            join.indexNestedLoop(outer, innerRight, index, innerWhere, out);
+        } else {
+            boolean buildLeft = leftRows < rightRows;
+            ResultSet build = buildLeft ? side(left, leftWhere, true) : side(right, rightWhere, true);
+            ResultSet probe = buildLeft ? side(right, rightWhere, readStreamed) : side(left, leftWhere, readStreamed);
+            join.hash(build, buildLeft, probe, out);
+        }
+        return new ResultSet(columns, aggregate != null ? result(aggregate) : joined, limit);
     }
 
-    // UPDATE command implementation
-    public String update(String[] tokens) {
-        String tableName = tokens[1];
-        Table table = tables.get(tableName);
+    // Estimated rows of a table meeting conditions on known columns joined by AND
+    private double estimatedRows(Table table, List<String[]> conditions) {
+        Object[] literals;
+        try {
+            literals = convertLiterals(table, conditions);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("ERROR: " + e.getMessage());
+        }
+        double rows = table.rows.size();
+        for (int i = 0; i < conditions.size(); i++) {
+            String[] condition = conditions.get(i);
+            rows *= conditionSelectivity(table, table.getColumnNames().indexOf(condition[0]), condition, literals[i]);
+        }
+        return rows;
+    }
 
-        if (table == null) {
-            return "Error: no such table: " + tableName;
+    // Rows of one table of a join meeting its own conditions, found as for a SELECT on it alone
+    private ResultSet side(Table table, List<String[]> conditions, boolean readAll) {
+        Statement.Select select = new Statement.Select();
+        select.tableName = table.tableName;
+        select.where = conditions;
+        select.groupBy = new ArrayList<>();
+        return query(table, select, readAll);
+    }
+
+    // Conditions on known columns compiled for table; throws IllegalArgumentException with the
+    // error message if a value does not fit its column
+    private RowPredicate compile(Table table, List<String[]> conditions) {
+        try {
+            return RowPredicate.compile(table, conditions, convertLiterals(table, conditions));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("ERROR: " + e.getMessage());
         }
+    }
 
-        String columnName = tokens[3];
-        String newValue = tokens[5];  // This is the new value to set for the specified column
-        int WHERE_CLAUSE_UPDATE = 6;
-
-        // Parse WHERE clause conditions
-        List<String[]> whereClauseConditions = new ArrayList<>();
-        if (tokens.length > WHERE_CLAUSE_UPDATE && tokens[WHERE_CLAUSE_UPDATE].toUpperCase().equals("WHERE")) {
-            for (int i = WHERE_CLAUSE_UPDATE + 1; i < tokens.length; i++) {
-                if (isOperator(tokens[i])) {
-                    String column = tokens[i - 1];
-                    String operator = tokens[i];
-                    String value = tokens[i + 1];
-                    whereClauseConditions.add(new String[]{column, operator, value});
-                    i++;  // Skip the value token
-                }
+    // Column of one of two joined tables as "table.column", given with or without its table's
+    // name. Throws IllegalArgumentException if neither table has it, or both do and it was given
+    // without a table name.
+    private static String qualify(Table left, Table right, String column) {
+        for (Table table : new Table[]{left, right}) {
+            if (column.startsWith(table.tableName + ".") && table.getColumnNames().contains(column(table, column))) {
+                return column;
             }
         }
+        boolean inLeft = left.getColumnNames().contains(column);
+        boolean inRight = right.getColumnNames().contains(column);
+        if (inLeft && inRight) {
+            throw new IllegalArgumentException("ERROR: Ambiguous column: " + column);
+        }
+        if (!inLeft && !inRight) {
+            throw new IllegalArgumentException("Error: no such column: " + column);
+        }
+        return (inLeft ? left : right).tableName + "." + column;
+    }
 
-        int rowsAffected = 0;
+    // Name within table of a column qualified with the table's name
+    private static String column(Table table, String qualified) {
+        return qualified.substring(table.tableName.length() + 1);
+    }
+
+    // UPDATE command implementation
+    public String update(Statement.Update statement) {
+        Table table = tables.get(statement.tableName);
+        if (table == null) {
+            return "Error: no such table: " + statement.tableName;
+        }
+        return update(table, statement.column, statement.value, statement.where);
+    }
+
+    // newValue is the new value to set for the specified column
+    private String update(Table table, String columnName, String newValue, List<String[]> whereClauseConditions) {
+        String tableName = table.tableName;
         int columnIndex = table.getColumnNames().indexOf(columnName);
         if (columnIndex == -1) {
             return "Error: no such column: " + columnName;
         }
 
-        // Iterate over rows in the custom HashMap and update matching rows
-        for (edu.smu.smusql.HashMap.Entry<Integer, Table.Row> entry : table.rows.entrySet()) {
-            Table.Row row = entry.getValue();
-            if (evaluateWhereConditions(row, whereClauseConditions, table.getColumnNames())) {
-                row.setValue(columnIndex, newValue);  // Set the new value in the specified column
-                rowsAffected++;
+        String unknownColumn = unknownColumn(table, whereClauseConditions);
+        if (unknownColumn != null) {
+            return "Error: no such column: " + unknownColumn;
+        }
+
+        // Convert the new value and the WHERE literals of typed columns once, up front
+        Object value;
+        Object[] literals;
+        try {
+            value = table.convertValue(columnIndex, newValue);
+            literals = convertLiterals(table, whereClauseConditions);
+        } catch (IllegalArgumentException e) {
+            return "ERROR: " + e.getMessage();
+        }
+        orderConditions(table, whereClauseConditions, literals);
+        RowPredicate where = RowPredicate.compile(table, whereClauseConditions, literals);
+
+        // Matched up front, then apply the new value, so rows getting a new primary key are all
+        // matched before any of them changes
+        boolean setsPrimaryKey = columnIndex == table.getPrimaryKeyColumn();
+        ParallelScan.Matches matches = plannedMatches(table, whereClauseConditions, literals, where);
+        if (matches == null) {
+            matches = scanMatches(table, whereClauseConditions, literals, where);
+        }
+        if (setsPrimaryKey && matches.size > 1) {
+            return "ERROR: Duplicate primary key: " + value;  // Every match would get the same key
+        }
+        try {
+            for (int i = 0; i < matches.size; i++) {
+                table.updateValue(matches.keys[i], matches.rows[i], columnIndex, value);  // Set the new value in the specified column
             }
+        } catch (IllegalArgumentException e) {
+            return "ERROR: " + e.getMessage();  // The new key belongs to another row; nothing changed
         }
+        int rowsAffected = matches.size;
 
         return "Updated " + rowsAffected + " rows in " + tableName;
     }
 
 
-    // CREATE TABLE command implementation
-    public String create(String[] tokens) {
-        if (!tokens[1].toUpperCase().equals("TABLE")) {
-            return "ERROR: Invalid CREATE TABLE syntax";
+    // CREATE TABLE command implementation, e.g. CREATE TABLE users (id INT PRIMARY KEY, name VARCHAR, age)
+    // STORAGE OFF_HEAP: each column is "name" or "name TYPE" and one of them may be the primary key
+    public String create(Statement.CreateTable statement) {
+        String tableName = statement.tableName;
+        Table table = new Table(tableName, statement.columns, statement.columnTypes, statement.storage);
+        if (statement.primaryKey != null) {
+            table.setPrimaryKey(statement.primaryKey);
         }
-
-        String tableName = tokens[2];
-        String columnList = queryBetweenParentheses(tokens, 3); // Get columns between parentheses
-        List<String> columns = Arrays.asList(columnList.split(","));
-        columns.replaceAll(String::trim);
-
-        Table table = new Table(tableName, columns);
         tables.put(tableName, table);
+        schemaChanged(tableName);
 
         return "Table " + tableName + " created.";
     }
 
+    // CREATE INDEX indexName ON tableName (column) [USING HASH|RANGE|BITMAP]: secondary index used
+    // by "=" conditions on the column, by range conditions too for RANGE and BITMAP indexes, and by
+    // AND/OR combinations of conditions for BITMAP indexes
+    public String createIndex(Statement.CreateIndex statement) {
+        String tableName = statement.tableName;
+        Table table = tables.get(tableName);
+        if (table == null) {
+            return "Error: no such table: " + tableName;
+        }
+        try {
+            table.createIndex(statement.indexName, statement.column, statement.type);
+        } catch (IllegalArgumentException e) {
+            return "ERROR: " + e.getMessage();
+        }
+        schemaChanged(tableName);
+        return "Index " + statement.indexName + " created.";
+    }
+
+    // SET STATS tableName ON|OFF: start or stop recording row map stats for a table
+    public String setStats(Statement.SetStats statement) {
+        String tableName = statement.tableName;
+        Table table = tables.get(tableName);
+        if (table == null) {
+            return "Error: no such table: " + tableName;
+        }
+        if (statement.enable) {
+            table.rows.enableStats();
+            return "Stats enabled for " + tableName;
+        }
+        table.rows.disableStats();
+        return "Stats disabled for " + tableName;
+    }
+
+    // SHOW STATS tableName: probe lengths, clustering and resize history of a table's row map
+    public String showStats(Statement.ShowStats statement) {
+        String tableName = statement.tableName;
+        HashStats stats = getTableStats(tableName);
+        if (stats == null) {
+            return tables.get(tableName) == null
+                    ? "Error: no such table: " + tableName
+                    : "Stats are not enabled for " + tableName + " (use SET STATS " + tableName + " ON)";
+        }
+        return stats.toString();
+    }
+
+    // ANALYZE [tableName]: gather the statistics the planner estimates costs from, for one table or
+    // for all of them. Tables also gather them on their own once they have changed enough.
+    public String analyze(Statement.Analyze statement) {
+        String tableName = statement.tableName;
+        if (tableName == null) {
+            tables.forEach((name, table) -> table.analyze());
+            return "Analyzed " + tables.size() + " tables";
+        }
+        Table table = tables.get(tableName);
+        if (table == null) {
+            return "Error: no such table: " + tableName;
+        }
+        table.analyze();
+        return "Table " + tableName + " analyzed.";
+    }
+
+    // Table by name, or null if it does not exist; e.g. to take a snapshot of a SNAPSHOT table
+    public Table getTable(String tableName) {
+        return tables.get(tableName);
+    }
+
+    // Row map stats of a table, or null if the table does not exist or stats are off
+    public HashStats getTableStats(String tableName) {
+        Table table = tables.get(tableName);
+        return table == null ? null : table.rows.getStats();
+    }
+
     // HELPER METHODS
-    private String queryBetweenParentheses(String[] tokens, int startIndex) {
-        StringBuilder result = new StringBuilder();
-        for (int i = startIndex; i < tokens.length; i++) {
-            result.append(tokens[i]).append(" ");
+
+    // A table was created, replacing any of the same name, or indexed: cached statements on it are
+    // dropped and prepared ones look their table up again
+    private void schemaChanged(String tableName) {
+        schemaVersion++;
+        statementCache.invalidate(tableName);
+    }
+
+    // Rows matching the WHERE conditions, found column by column for COLUMNAR tables and by a
+    // batched scan of the row map otherwise, in parallel for large tables
+    private ParallelScan.Matches scanMatches(Table table, List<String[]> conditions, Object[] literals,
+                                             RowPredicate where) {
+        if (table.isColumnar()) {
+            return table.filterColumns(conditions, literals);
         }
-        return result.toString().trim().replaceAll("\\(", "").replaceAll("\\)", "");
+        if (table.rows.size() >= PARALLEL_SCAN_THRESHOLD) {
+            return ParallelScan.filter(table.rows, where);
+        }
+        ParallelScan.Matches matches = new ParallelScan.Matches();
+        RowBatch.scan(table.rows, where, matches::add);
+        return matches;
     }
 
-    private boolean isOperator(String token) {
-        return token.equals("=") || token.equals(">") || token.equals("<") || token.equals(">=") || token.equals("<=");
+    // Access path of the lowest estimated cost for the WHERE conditions, which must name known
+    // columns; costs are in rows of a full scan, with row counts from the indexes where they know
+    // them exactly and from the table's statistics otherwise. A primary key lookup reads at most
+    // one row and wins outright. Returns the matching rows, or null if a full scan is cheapest.
+    private ParallelScan.Matches plannedMatches(Table table, List<String[]> conditions, Object[] literals,
+                                                RowPredicate where) {
+        List<String> columns = table.getColumnNames();
+        if (conditions.isEmpty()) {
+            return null;
+        }
+        boolean disjunction = hasOr(conditions);
+        if (!disjunction) {
+            ParallelScan.Matches matches = primaryKeyMatches(table, conditions, literals, where);
+            if (matches != null) {
+                return matches;
+            }
+        }
+        int rows = table.rows.size();
+        double bestCost = rows * (table.isColumnar() ? COLUMNAR_ROW_COST : 1);
+        Supplier<ParallelScan.Matches> best = null; // null for the scan
+
+        if (!disjunction) {
+            // Lookup of an "=" condition on an indexed column, counted exactly by the index
+            for (int i = 0; i < conditions.size(); i++) {
+                String[] condition = conditions.get(i);
+                int columnIndex = columns.indexOf(condition[0]);
+                SecondaryIndex index = table.getIndex(columnIndex);
+                if (!condition[1].equals("=") || index == null) {
+                    continue;
+                }
+                Object key = conditionKey(table, columnIndex, condition, literals[i]);
+                int count = index.count(key);
+                if (count == 0) {
+                    return new ParallelScan.Matches(); // No row has the value
+                }
+                if (count * INDEX_ROW_COST < bestCost) {
+                    bestCost = count * INDEX_ROW_COST;
+                    best = () -> lookupMatches(table, index, key, count, where);
+                }
+            }
+            // Range of a RANGE-indexed column, estimated from the column's histogram
+            for (String[] condition : conditions) {
+                RangeIndex index = table.getRangeIndex(columns.indexOf(condition[0]));
+                double selectivity = index == null ? -1
+                        : rangeSelectivity(table, index.columnIndex, conditions, literals);
+                if (selectivity >= 0 && rows * selectivity * INDEX_ROW_COST < bestCost) {
+                    bestCost = rows * selectivity * INDEX_ROW_COST;
+                    best = () -> rangeMatches(table, index, conditions, literals, where);
+                }
+            }
+        }
+
+        double bitmapCost = bitmapCost(table, conditions, literals);
+        if (bitmapCost < bestCost) {
+            bestCost = bitmapCost;
+            best = () -> bitmapMatches(table, conditions, literals, where);
+        }
+
+        boolean[] blocks = table.getZoneMap().candidateBlocks(conditions, literals, columns);
+        int kept = 0;
+        for (boolean block : blocks) {
+            if (block) {
+                kept++;
+            }
+        }
+        if ((double) kept * ZoneMap.BLOCK_SIZE * ZONE_ROW_COST < bestCost) {
+            best = () -> zoneMatches(table, blocks, where);
+        }
+        return best == null ? null : best.get();
     }
 
-    private boolean evaluateWhereConditions(Table.Row row, List<String[]> conditions, List<String> columns) {
-        boolean match = true;
-        for (String[] condition : conditions) {
-            String column = condition[0];
-            String operator = condition[1];
-            String value = condition[2];
-            int columnIndex = columns.indexOf(column);
-            Object columnValue = row.getValue(columnIndex);
+    // Estimated cost of bitmapMatches: the ids its bitmaps combine and the rows it reads. Each
+    // bitmap holds the rows of one value for "=", or is gathered from every value for ranges.
+    // Double.MAX_VALUE if some OR-group has no condition a bitmap can answer.
+    private double bitmapCost(Table table, List<String[]> conditions, Object[] literals) {
+        List<String> columns = table.getColumnNames();
+        int rows = table.rows.size();
+        double cost = 0;
+        double selected = 0; // Estimated fraction of rows in the union
+        double group = 1; // Estimated fraction of rows in the current group
+        boolean answered = false; // Current group has a bitmap
+        for (int i = 0; i <= conditions.size(); i++) {
+            if (i == conditions.size() || (i > 0 && startsOrGroup(conditions.get(i)))) {
+                if (!answered) {
+                    return Double.MAX_VALUE;
+                }
+                selected += group;
+                group = 1;
+                answered = false;
+                if (i == conditions.size()) {
+                    break;
+                }
+            }
+            String[] condition = conditions.get(i);
+            int columnIndex = columns.indexOf(condition[0]);
+            double selectivity = conditionSelectivity(table, columnIndex, condition, literals[i]);
+            group *= selectivity;
+            BitmapIndex index = table.getBitmapIndex(columnIndex);
+            if (index != null && ordered(table, columnIndex, condition, literals[i])) {
+                answered = true;
+                cost += rows * selectivity * BITMAP_ID_COST;
+                if (!condition[1].equals("=")) {
+                    cost += index.distinctValues() * BITMAP_ID_COST;
+                }
+            }
+        }
+        return cost + rows * Math.min(1, selected) * INDEX_ROW_COST;
+    }
 
-            if (!evaluateCondition(columnValue.toString(), operator, value)) {
-                match = false;
-                break;
+    // Estimated fraction of rows in the range the conditions on a RANGE-indexed column select, or
+    // -1 if the index cannot answer them (see Table.findRange)
+    private double rangeSelectivity(Table table, int columnIndex, List<String[]> conditions, Object[] literals) {
+        String column = table.getColumnNames().get(columnIndex);
+        RangeIndex.Range range = new RangeIndex.Range(null, null);
+        for (int i = 0; i < conditions.size(); i++) {
+            String[] condition = conditions.get(i);
+            if (!condition[0].equals(column) || condition[1].equals("LIKE")) {
+                continue; // LIKE conditions are checked on the rows found
             }
+            // Unlike a bitmap, findRange holds untyped columns to numeric literals for "=" too
+            Object key = conditionKey(table, columnIndex, condition, literals[i]);
+            if (table.columnTypes.get(columnIndex) == null && !(key instanceof Double)) {
+                return -1;
+            }
+            range.restrict(condition[1], key);
         }
-        return match;
+        return table.getStatistics(columnIndex).selectivity(range);
     }
 
-    private boolean evaluateCondition(String columnValue, String operator, String value) {
-        if (columnValue == null) return false;
+    // Estimated fraction of rows meeting a condition on a known column
+    private double conditionSelectivity(Table table, int columnIndex, String[] condition, Object literal) {
+        if (condition[1].equals("LIKE")) {
+            return LIKE_SELECTIVITY;
+        }
+        return table.getStatistics(columnIndex).selectivity(condition[1],
+                conditionKey(table, columnIndex, condition, literal));
+    }
 
-        Comparator<String> comparator = isNumeric(columnValue) && isNumeric(value)
-                ? Comparator.comparingDouble(Double::parseDouble)
-                : String::compareTo;
+    // Relative cost of testing a condition on a row (see RowPredicate): converted literals compare
+    // natively, untyped columns compare text with non-numeric values and parse their text for
+    // numeric ones, and matching a LIKE pattern walks the text
+    private double evaluationCost(Table table, int columnIndex, String[] condition, Object literal) {
+        if (condition[1].equals("LIKE")) {
+            return 10;
+        }
+        if (literal != null) {
+            return 1;
+        }
+        return conditionKey(table, columnIndex, condition, null) instanceof Double ? 4 : 2;
+    }
 
-        int comparison = comparator.compare(columnValue, value);
+    // Index key of a condition's value: the converted literal, or the raw text for an untyped column
+    private Object conditionKey(Table table, int columnIndex, String[] condition, Object literal) {
+        return table.indexKey(columnIndex, literal != null ? literal : condition[2]);
+    }
 
+    // Whether a condition selects a run of index keys, as RANGE and BITMAP indexes need: untyped
+    // columns compare their numbers as text with a non-numeric value unless the operator is "=",
+    // and a LIKE pattern matches keys anywhere in the order
+    private boolean ordered(Table table, int columnIndex, String[] condition, Object literal) {
+        if (condition[1].equals("LIKE")) {
+            return false;
+        }
+        return condition[1].equals("=") || table.columnTypes.get(columnIndex) != null
+                || conditionKey(table, columnIndex, condition, literal) instanceof Double;
+    }
+
+    // Reorder the conditions of each OR-group, with their literals, so that evaluating a row stops
+    // at its first failing condition as cheaply as possible: by evaluation cost per row a condition
+    // rules out, from the table's statistics, which puts the most selective first among conditions
+    // that cost the same
+    private void orderConditions(Table table, List<String[]> conditions, Object[] literals) {
+        List<String> columns = table.getColumnNames();
+        double[] rank = new double[conditions.size()];
+        for (int start = 0; start < conditions.size(); ) {
+            int end = start + 1;
+            while (end < conditions.size() && !startsOrGroup(conditions.get(end))) {
+                end++;
+            }
+            if (end - start > 1) {
+                for (int i = start; i < end; i++) {
+                    String[] condition = conditions.get(i);
+                    int columnIndex = columns.indexOf(condition[0]);
+                    double selectivity = conditionSelectivity(table, columnIndex, condition, literals[i]);
+                    rank[i] = evaluationCost(table, columnIndex, condition, literals[i])
+                            / Math.max(1 - selectivity, 1e-9); // Conditions every row meets go last
+                }
+                // Insertion sort; equally ranked conditions keep their order
+                for (int i = start + 1; i < end; i++) {
+                    for (int j = i; j > start && rank[j] < rank[j - 1]; j--) {
+                        double swap = rank[j];
+                        rank[j] = rank[j - 1];
+                        rank[j - 1] = swap;
+                        Object literal = literals[j];
+                        literals[j] = literals[j - 1];
+                        literals[j - 1] = literal;
+                        Collections.swap(conditions, j, j - 1);
+                    }
+                }
+                for (int i = start; i < end; i++) {
+                    conditions.get(i)[3] = i == start && start > 0 ? "OR" : "AND"; // The group's first takes its OR
+                }
+            }
+            start = end;
+        }
+    }
+
+    // The row an "=" condition on the primary key points to, kept if it meets every condition;
+    // null if there is no such condition
+    private ParallelScan.Matches primaryKeyMatches(Table table, List<String[]> conditions, Object[] literals,
+                                                   RowPredicate where) {
+        int primaryKeyColumn = table.getPrimaryKeyColumn();
+        if (primaryKeyColumn == -1) {
+            return null;
+        }
+        String primaryKey = table.getColumnNames().get(primaryKeyColumn);
+        for (int i = 0; i < conditions.size(); i++) {
+            String[] condition = conditions.get(i);
+            if (condition[1].equals("=") && condition[0].equals(primaryKey)) {
+                ParallelScan.Matches matches = new ParallelScan.Matches(1);
+                int key = table.findByPrimaryKey(literals[i] != null ? literals[i] : condition[2]);
+                Table.Row row = key == -1 ? null : table.rows.get(key);
+                if (row != null && where.test(row)) {
+                    matches.add(key, row);
+                }
+                return matches;
+            }
+        }
+        return null;
+    }
+
+    // Rows of the OR-groups of conditions, each group narrowed to the AND of the bitmaps of its
+    // conditions on BITMAP-indexed columns. When every condition has a bitmap the union is the
+    // answer and no row is evaluated; otherwise its rows are checked against every condition.
+    // null if some group has no condition a bitmap can answer, as it could match any row.
+    private ParallelScan.Matches bitmapMatches(Table table, List<String[]> conditions, Object[] literals,
+                                               RowPredicate where) {
+        List<String> columns = table.getColumnNames();
+        RoaringBitmap union = new RoaringBitmap();
+        RoaringBitmap group = null; // AND of the current group's bitmaps so far
+        boolean exact = true;
+        for (int i = 0; i <= conditions.size(); i++) {
+            if (i == conditions.size() || (i > 0 && startsOrGroup(conditions.get(i)))) {
+                if (group == null) {
+                    return null;
+                }
+                union = union.or(group);
+                group = null;
+                if (i == conditions.size()) {
+                    break;
+                }
+            }
+            String[] condition = conditions.get(i);
+            BitmapIndex index = table.getBitmapIndex(columns.indexOf(condition[0]));
+            RoaringBitmap ids = index == null ? null : table.findBitmap(index, condition, literals[i]);
+            if (ids == null) {
+                exact = false;
+                continue;
+            }
+            group = group == null ? ids : group.and(ids);
+        }
+        ParallelScan.Matches matches = new ParallelScan.Matches(union.cardinality());
+        boolean checkRows = !exact;
+        union.forEach(key -> {
+            Table.Row row = table.rows.get(key);
+            if (!checkRows || where.test(row)) {
+                matches.add(key, row);
+            }
+        });
+        return matches;
+    }
+
+    // The count rows of a secondary index holding key, each kept if it meets every condition
+    private ParallelScan.Matches lookupMatches(Table table, SecondaryIndex index, Object key, int count,
+                                               RowPredicate where) {
+        ParallelScan.Matches matches = new ParallelScan.Matches(count);
+        index.forEach(key, id -> {
+            Table.Row row = table.rows.get(id);
+            if (where.test(row)) {
+                matches.add(id, row);
+            }
+        });
+        return matches;
+    }
+
+    // Rows of the zone map blocks marked as candidates, read block by block and kept if they meet
+    // the conditions
+    private ParallelScan.Matches zoneMatches(Table table, boolean[] blocks, RowPredicate where) {
+        ParallelScan.Matches matches = new ParallelScan.Matches();
+        for (int block = 0; block < blocks.length; block++) {
+            if (!blocks[block]) {
+                continue;
+            }
+            for (int key = ZoneMap.firstRowId(block); key < ZoneMap.firstRowId(block + 1); key++) {
+                Table.Row row = table.rows.get(key);
+                if (row != null && where.test(row)) {
+                    matches.add(key, row);
+                }
+            }
+        }
+        return matches;
+    }
+
+    // Rows in the range the conditions on a RANGE-indexed column select, in order of that
+    // column's value and kept if they meet every condition; null if the index cannot answer them
+    private ParallelScan.Matches rangeMatches(Table table, RangeIndex index, List<String[]> conditions,
+                                              Object[] literals, RowPredicate where) {
+        ParallelScan.Matches matches = new ParallelScan.Matches();
+        boolean answered = table.findRange(index, conditions, literals, key -> {
+            Table.Row row = table.rows.get(key);
+            if (where.test(row)) {
+                matches.add(key, row);
+            }
+        });
+        return answered ? matches : null;
+    }
+
+    // First column of the select list, GROUP BY or WHERE clause the table does not have, or null
+    private static String unknownColumn(Table table, Statement.Select statement) {
+        List<String> columns = table.getColumnNames();
+        if (statement.items != null) {
+            for (String[] item : statement.items) {
+                if (!item[1].equals("*") && !columns.contains(item[1])) {
+                    return item[1];
+                }
+            }
+        }
+        for (String column : statement.groupBy) {
+            if (!columns.contains(column)) {
+                return column;
+            }
+        }
+        return unknownColumn(table, statement.where);
+    }
+
+    // First column the conditions name that the table does not have, or null
+    private static String unknownColumn(Table table, List<String[]> conditions) {
+        for (String[] condition : conditions) {
+            if (!table.getColumnNames().contains(condition[0])) {
+                return condition[0];
+            }
+        }
+        return null;
+    }
+
+    // Each condition's value converted for its column's declared type, null for untyped columns;
+    // the unquoted pattern of a LIKE condition on any column.
+    // Throws IllegalArgumentException if a value does not fit its column.
+    private Object[] convertLiterals(Schema schema, List<String[]> conditions) {
+        Object[] literals = new Object[conditions.size()];
+        for (int i = 0; i < literals.length; i++) {
+            int columnIndex = schema.getColumnNames().indexOf(conditions.get(i)[0]);
+            if (conditions.get(i)[1].equals("LIKE")) {
+                literals[i] = ColumnType.unquote(conditions.get(i)[2]);
+            } else if (columnIndex != -1) {
+                literals[i] = schema.convertLiteral(columnIndex, conditions.get(i)[2]);
+            }
+        }
+        return literals;
+    }
+    static boolean startsOrGroup(String[] condition) {
+        return condition.length > 3 && condition[3].equals("OR");
+    }
+
+    static boolean hasOr(List<String[]> conditions) {
+        for (int i = 1; i < conditions.size(); i++) {
+            if (startsOrGroup(conditions.get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean compareResult(int comparison, String operator) {
         switch (operator) {
             case "=": return comparison == 0;
             case ">": return comparison > 0;
@@ -259,13 +1017,32 @@ public class Engine {
         }
     }
 
-    // Helper method to determine if a string is numeric
-    private boolean isNumeric(String str) {
-        try {
-            Double.parseDouble(str);
-            return true;
-        } catch (NumberFormatException e) {
-            return false;
+    // Whether text matches a LIKE pattern, in which % stands for any run of characters, _ for any
+    // one character and every other character for itself. On a mismatch after a % the % takes one
+    // more character and matching resumes, so no more than text length times pattern length steps.
+    static boolean like(String text, String pattern) {
+        int t = 0;
+        int p = 0;
+        int afterPercent = -1; // Pattern position after the last % seen, -1 if none
+        int percentText = 0; // Text position that % has matched up to
+        while (t < text.length()) {
+            char c = p < pattern.length() ? pattern.charAt(p) : 0;
+            if (p < pattern.length() && c == '%') {
+                afterPercent = ++p;
+                percentText = t;
+            } else if (p < pattern.length() && (c == '_' || c == text.charAt(t))) {
+                p++;
+                t++;
+            } else if (afterPercent != -1) {
+                p = afterPercent;
+                t = ++percentText;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length() && pattern.charAt(p) == '%') {
+            p++;
         }
+        return p == pattern.length();
     }
 }
@@ -0,0 +1,478 @@
+package edu.smu.smusql;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+// Persistent hash array mapped trie from int keys to rows (CHAMP layout).
+// Every node has two bitmaps over the next 5 bits of the key's hash: one marks rows stored inline
+// in the node, the other child nodes. A write copies only the nodes on the path from the root to
+// the change and then publishes the new root, so every earlier root stays a complete, immutable
+// version of the map that shares all untouched nodes with the current one.
+// Scans (forEach, cursor, spliterator) and snapshot() capture the root once and never see later
+// writes. Writes must come from one thread at a time; any number of threads may read concurrently.
+public class HamtRowMap implements RowMap {
+    private static final int BITS = 5;
+    private static final int MAX_DEPTH = 7; // 32 hash bits, 5 per level
+    private static final Node EMPTY = new Node(0, 0, 0, new int[0], new Table.Row[0], new Node[0]);
+
+    private volatile Node root;
+    private final boolean readOnly;
+    private HashStats stats; // null unless enableStats() was called
+    private int probes; // nodes visited by the current put/remove
+    private Table.Row removed; // row taken out by the current remove
+
+    // Constructor to initialize the map
+    public HamtRowMap() {
+        this(EMPTY, false);
+    }
+
+    private HamtRowMap(Node root, boolean readOnly) {
+        this.root = root;
+        this.readOnly = readOnly;
+    }
+
+    // Read-only view of the map as it is now, in O(1).
+    // Later writes to this map do not show up in the snapshot.
+    public HamtRowMap snapshot() {
+        return new HamtRowMap(root, true);
+    }
+
+    // Bit for the hash's 5-bit chunk at shift
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & 31);
+    }
+
+    // Position among the entries whose bits in map are lower than bit
+    private static int index(int map, int bit) {
+        return Integer.bitCount(map & (bit - 1));
+    }
+
+    // Put key-row pair into the map, replacing any existing row for key
+    public void put(int key, Table.Row row) {
+        if (row == null) {
+            throw new IllegalArgumentException("HamtRowMap cannot store null rows");
+        }
+        checkWritable();
+        probes = 0;
+        root = insert(root, key, IntRowMap.mix(key), row, 0);
+        if (stats != null) {
+            stats.recordPut(probes);
+        }
+    }
+
+    private Node insert(Node node, int key, int hash, Table.Row row, int shift) {
+        probes++;
+        int bit = bit(hash, shift);
+        if ((node.dataMap & bit) != 0) {
+            int i = index(node.dataMap, bit);
+            if (node.keys[i] == key) {
+                return node.rows[i] == row ? node : node.withRow(i, row);
+            }
+            // Two keys share this chunk of hash bits, so both move one level down
+            Node child = pair(node.keys[i], node.rows[i], key, hash, row, shift + BITS);
+            return node.dataToNode(bit, child);
+        }
+        if ((node.nodeMap & bit) != 0) {
+            int i = index(node.nodeMap, bit);
+            Node child = node.nodes[i];
+            Node updated = insert(child, key, hash, row, shift + BITS);
+            return updated == child ? node : node.withNode(i, updated, updated.size - child.size);
+        }
+        return node.withData(bit, key, row);
+    }
+
+    // Node holding two rows whose hashes agree below shift. mix is a bijection, so distinct keys
+    // always differ in some chunk and the recursion ends by the last level.
+    private static Node pair(int key1, Table.Row row1, int key2, int hash2, Table.Row row2, int shift) {
+        int bit1 = bit(IntRowMap.mix(key1), shift);
+        int bit2 = bit(hash2, shift);
+        if (bit1 == bit2) {
+            Node child = pair(key1, row1, key2, hash2, row2, shift + BITS);
+            return new Node(0, bit1, 2, EMPTY.keys, EMPTY.rows, new Node[]{child});
+        }
+        if (Integer.compareUnsigned(bit1, bit2) < 0) {
+            return new Node(bit1 | bit2, 0, 2, new int[]{key1, key2}, new Table.Row[]{row1, row2}, EMPTY.nodes);
+        }
+        return new Node(bit1 | bit2, 0, 2, new int[]{key2, key1}, new Table.Row[]{row2, row1}, EMPTY.nodes);
+    }
+
+    // Get the row for key, or null if absent
+    public Table.Row get(int key) {
+        int hash = IntRowMap.mix(key);
+        Node node = root;
+        Table.Row row = null;
+        int visited = 1;
+        for (int shift = 0; ; shift += BITS, visited++) {
+            int bit = bit(hash, shift);
+            if ((node.dataMap & bit) != 0) {
+                int i = index(node.dataMap, bit);
+                if (node.keys[i] == key) {
+                    row = node.rows[i];
+                }
+                break;
+            }
+            if ((node.nodeMap & bit) == 0) {
+                break;
+            }
+            node = node.nodes[index(node.nodeMap, bit)];
+        }
+        if (stats != null) {
+            stats.recordGet(visited);
+        }
+        return row;
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    // Remove key and return its row (null if absent)
+    public Table.Row remove(int key) {
+        checkWritable();
+        probes = 0;
+        removed = null;
+        root = delete(root, key, IntRowMap.mix(key), 0);
+        if (stats != null) {
+            stats.recordRemove(probes);
+        }
+        Table.Row row = removed;
+        removed = null;
+        return row;
+    }
+
+    private Node delete(Node node, int key, int hash, int shift) {
+        probes++;
+        int bit = bit(hash, shift);
+        if ((node.dataMap & bit) != 0) {
+            int i = index(node.dataMap, bit);
+            if (node.keys[i] != key) {
+                return node;
+            }
+            removed = node.rows[i];
+            return node.withoutData(bit, i);
+        }
+        if ((node.nodeMap & bit) != 0) {
+            int i = index(node.nodeMap, bit);
+            Node child = node.nodes[i];
+            Node updated = delete(child, key, hash, shift + BITS);
+            if (updated == child) {
+                return node;
+            }
+            if (updated.size == 1) {
+                // A lone row moves back up, keeping the trie in its minimal shape
+                return node.nodeToData(bit, updated.keys[0], updated.rows[0]);
+            }
+            return node.withNode(i, updated, -1);
+        }
+        return node;
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Snapshot is read-only");
+        }
+    }
+
+    // Visit every key-row pair of the map as it was when the call started
+    public void forEach(Visitor visitor) {
+        visit(root, visitor);
+    }
+
+    private static void visit(Node node, Visitor visitor) {
+        for (int i = 0; i < node.keys.length; i++) {
+            visitor.visit(node.keys[i], node.rows[i]);
+        }
+        for (Node child : node.nodes) {
+            visit(child, visitor);
+        }
+    }
+
+    // Cursor over the map as it was when the cursor was created; remove() writes to the live map
+    public Cursor cursor() {
+        return new TrieCursor(root);
+    }
+
+    // Depth-first walk in forEach order: a node's own rows, then its children
+    private final class TrieCursor implements Cursor {
+        private final Node[] path = new Node[MAX_DEPTH];
+        private final int[] nextRow = new int[MAX_DEPTH];
+        private final int[] nextChild = new int[MAX_DEPTH];
+        private int depth;
+        private int currentKey;
+        private Table.Row currentRow;
+
+        private TrieCursor(Node start) {
+            path[0] = start;
+        }
+
+        @Override
+        public boolean next() {
+            while (depth >= 0) {
+                Node node = path[depth];
+                if (nextRow[depth] < node.keys.length) {
+                    int i = nextRow[depth]++;
+                    currentKey = node.keys[i];
+                    currentRow = node.rows[i];
+                    return true;
+                }
+                if (nextChild[depth] < node.nodes.length) {
+                    Node child = node.nodes[nextChild[depth]++];
+                    depth++;
+                    path[depth] = child;
+                    nextRow[depth] = 0;
+                    nextChild[depth] = 0;
+                } else {
+                    depth--;
+                }
+            }
+            currentRow = null;
+            return false;
+        }
+
+        @Override
+        public int key() {
+            checkCurrent();
+            return currentKey;
+        }
+
+        @Override
+        public Table.Row row() {
+            checkCurrent();
+            return currentRow;
+        }
+
+        @Override
+        public void remove() {
+            checkCurrent();
+            HamtRowMap.this.remove(currentKey);
+            currentRow = null;
+        }
+
+        private void checkCurrent() {
+            if (currentRow == null) {
+                throw new IllegalStateException("Cursor is not positioned on a row");
+            }
+        }
+    }
+
+    // Spliterator over the map as it was when the call started.
+    // Splits hand over whole subtrees, and the subtree sizes make every estimate exact.
+    public RowSpliterator spliterator() {
+        return new TrieSpliterator(root);
+    }
+
+    private final class TrieSpliterator implements RowSpliterator {
+        private Node part; // rows and subtrees not yet handed out, possibly a node assembled by trySplit
+        private TrieCursor cursor; // set once tryAdvance starts walking part
+        private long advanced;
+
+        TrieSpliterator(Node part) {
+            this.part = part;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Table.Row> action) {
+            return tryAdvance((key, row) -> action.accept(row));
+        }
+
+        @Override
+        public boolean tryAdvance(Visitor visitor) {
+            if (cursor == null) {
+                cursor = new TrieCursor(part);
+            }
+            if (!cursor.next()) {
+                return false;
+            }
+            advanced++;
+            visitor.visit(cursor.currentKey, cursor.currentRow);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Table.Row> action) {
+            forEachRemaining((key, row) -> action.accept(row));
+        }
+
+        @Override
+        public void forEachRemaining(Visitor visitor) {
+            if (cursor == null) {
+                visit(part, visitor);
+            } else {
+                while (cursor.next()) {
+                    visitor.visit(cursor.currentKey, cursor.currentRow);
+                }
+            }
+            part = EMPTY;
+            cursor = null;
+            advanced = 0;
+        }
+
+        // Hand the first half of the remaining subtrees (and part's own rows) to a new spliterator
+        @Override
+        public TrieSpliterator trySplit() {
+            if (cursor != null) {
+                return null;
+            }
+            while (true) {
+                Node[] nodes = part.nodes;
+                if (nodes.length >= 2) {
+                    int mid = nodes.length >>> 1;
+                    TrieSpliterator prefix = new TrieSpliterator(
+                            Node.of(part.keys, part.rows, Arrays.copyOfRange(nodes, 0, mid)));
+                    part = Node.of(EMPTY.keys, EMPTY.rows, Arrays.copyOfRange(nodes, mid, nodes.length));
+                    return prefix;
+                }
+                if (nodes.length == 0) {
+                    return null;
+                }
+                if (part.keys.length > 0) {
+                    TrieSpliterator prefix = new TrieSpliterator(Node.of(part.keys, part.rows, EMPTY.nodes));
+                    part = nodes[0];
+                    return prefix;
+                }
+                part = nodes[0]; // A single subtree and no rows of its own: split one level down
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return part.size - advanced;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.NONNULL | Spliterator.ORDERED | Spliterator.IMMUTABLE
+                    | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+    }
+
+    // Stats are kept like IntRowMap's, with one probe per trie node visited.
+    // The trie never resizes or forms clusters; capacity counts the row and child slots of all nodes.
+    public void enableStats() {
+        if (stats == null) {
+            stats = new HashStats();
+        }
+    }
+
+    public void disableStats() {
+        stats = null;
+    }
+
+    public HashStats getStats() {
+        if (stats != null) {
+            Node current = root;
+            stats.size = current.size;
+            stats.capacity = slotCount(current);
+            stats.longestCluster = 0;
+        }
+        return stats;
+    }
+
+    private static int slotCount(Node node) {
+        int slots = node.keys.length + node.nodes.length;
+        for (Node child : node.nodes) {
+            slots += slotCount(child);
+        }
+        return slots;
+    }
+
+    // Get the size of the map
+    public int size() {
+        return root.size;
+    }
+
+    // Immutable trie node; rows and children are kept in the order of their bits
+    static final class Node {
+        final int dataMap; // bits of the rows stored in this node
+        final int nodeMap; // bits of the child nodes
+        final int size;    // rows in this subtree
+        final int[] keys;
+        final Table.Row[] rows;
+        final Node[] nodes;
+
+        Node(int dataMap, int nodeMap, int size, int[] keys, Table.Row[] rows, Node[] nodes) {
+            this.dataMap = dataMap;
+            this.nodeMap = nodeMap;
+            this.size = size;
+            this.keys = keys;
+            this.rows = rows;
+            this.nodes = nodes;
+        }
+
+        // Bitmap-less node used only to hand parts of a trie to spliterators
+        static Node of(int[] keys, Table.Row[] rows, Node[] nodes) {
+            int size = keys.length;
+            for (Node child : nodes) {
+                size += child.size;
+            }
+            return new Node(0, 0, size, keys, rows, nodes);
+        }
+
+        Node withRow(int i, Table.Row row) {
+            Table.Row[] newRows = rows.clone();
+            newRows[i] = row;
+            return new Node(dataMap, nodeMap, size, keys, newRows, nodes);
+        }
+
+        Node withNode(int i, Node child, int sizeChange) {
+            Node[] newNodes = nodes.clone();
+            newNodes[i] = child;
+            return new Node(dataMap, nodeMap, size + sizeChange, keys, rows, newNodes);
+        }
+
+        Node withData(int bit, int key, Table.Row row) {
+            int i = index(dataMap, bit);
+            return new Node(dataMap | bit, nodeMap, size + 1,
+                    insertAt(keys, i, key), insertAt(rows, i, row), nodes);
+        }
+
+        Node withoutData(int bit, int i) {
+            return new Node(dataMap & ~bit, nodeMap, size - 1, removeAt(keys, i), removeAt(rows, i), nodes);
+        }
+
+        // Replace the row at bit by a child node holding it and one more row
+        Node dataToNode(int bit, Node child) {
+            int dataIndex = index(dataMap, bit);
+            int nodeIndex = index(nodeMap, bit);
+            return new Node(dataMap & ~bit, nodeMap | bit, size + 1,
+                    removeAt(keys, dataIndex), removeAt(rows, dataIndex), insertAt(nodes, nodeIndex, child));
+        }
+
+        // Replace the child at bit, now down to a single row, by that row
+        Node nodeToData(int bit, int key, Table.Row row) {
+            int dataIndex = index(dataMap, bit);
+            int nodeIndex = index(nodeMap, bit);
+            return new Node(dataMap | bit, nodeMap & ~bit, size - 1,
+                    insertAt(keys, dataIndex, key), insertAt(rows, dataIndex, row), removeAt(nodes, nodeIndex));
+        }
+
+        private static int[] insertAt(int[] array, int i, int value) {
+            int[] result = new int[array.length + 1];
+            System.arraycopy(array, 0, result, 0, i);
+            result[i] = value;
+            System.arraycopy(array, i, result, i + 1, array.length - i);
+            return result;
+        }
+
+        private static <T> T[] insertAt(T[] array, int i, T value) {
+            T[] result = Arrays.copyOf(array, array.length + 1);
+            System.arraycopy(array, i, result, i + 1, array.length - i);
+            result[i] = value;
+            return result;
+        }
+
+        private static int[] removeAt(int[] array, int i) {
+            int[] result = new int[array.length - 1];
+            System.arraycopy(array, 0, result, 0, i);
+            System.arraycopy(array, i + 1, result, i, array.length - i - 1);
+            return result;
+        }
+
+        private static <T> T[] removeAt(T[] array, int i) {
+            T[] result = Arrays.copyOf(array, array.length - 1);
+            System.arraycopy(array, i + 1, result, i, array.length - i - 1);
+            return result;
+        }
+    }
+}
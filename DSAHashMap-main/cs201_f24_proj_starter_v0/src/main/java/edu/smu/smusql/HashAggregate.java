@@ -0,0 +1,397 @@
+package edu.smu.smusql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+// Hash aggregation for a SELECT with aggregate functions or GROUP BY. Each row added goes to the
+// group of its GROUP BY values, found in a HashMap on their index keys (Schema.indexKey, so values
+// a WHERE "=" finds equal share a group), and every aggregate of the select list takes in its
+// value in that group's accumulator. Groups are listed in the order their first rows were added,
+// with the GROUP BY values of those rows; without GROUP BY there is exactly one group. Null values,
+// which only joins produce, form a group of their own and are skipped by the aggregates, so an
+// aggregate over no values is null.
+// Aggregates built over separate parts of a table merge into the aggregate of the whole, which is
+// how a parallel scan aggregates its parts (see addParallel).
+final class HashAggregate {
+    private static final Object NULL_KEY = new Object(); // Group key of a null value
+
+    private final Schema schema;
+    private final List<String[]> items;
+    private final List<String> columnNames; // Labels of the result columns
+    private final int[] groupColumns;
+    private final int[] itemColumns; // Column each aggregate reads, -1 for COUNT(*)
+    private final int[] itemGroups; // GROUP BY position of each plain column, -1 for aggregates
+    private final HashMap<Object, Group> groups = new HashMap<>();
+    private final List<Group> order = new ArrayList<>();
+
+    // items: the select list (see Statement.Select), null for SELECT *; groupBy: the GROUP BY
+    // columns. Every column named must be known. Throws IllegalArgumentException if they do not
+    // make an aggregate query.
+    HashAggregate(Schema schema, List<String[]> items, List<String> groupBy) {
+        if (items == null) {
+            throw new IllegalArgumentException("GROUP BY needs a select list");
+        }
+        boolean aggregates = false;
+        for (String[] item : items) {
+            aggregates |= item[0] != null;
+        }
+        if (!aggregates && groupBy.isEmpty()) {
+            throw new IllegalArgumentException("Columns can only be listed with GROUP BY or an aggregate");
+        }
+        List<String> columns = schema.getColumnNames();
+        this.schema = schema;
+        this.items = items;
+        groupColumns = new int[groupBy.size()];
+        for (int i = 0; i < groupColumns.length; i++) {
+            groupColumns[i] = columns.indexOf(groupBy.get(i));
+        }
+        columnNames = new ArrayList<>(items.size());
+        itemColumns = new int[items.size()];
+        itemGroups = new int[items.size()];
+        for (int i = 0; i < itemColumns.length; i++) {
+            String function = items.get(i)[0];
+            String column = items.get(i)[1];
+            itemColumns[i] = column.equals("*") ? -1 : columns.indexOf(column);
+            itemGroups[i] = function == null ? groupBy.indexOf(column) : -1;
+            if (function == null && itemGroups[i] == -1) {
+                throw new IllegalArgumentException("Column " + column + " must appear in GROUP BY");
+            }
+            if ((function != null && (function.equals("SUM") || function.equals("AVG")))
+                    && schema.columnTypes.get(itemColumns[i]) == ColumnType.VARCHAR) {
+                throw new IllegalArgumentException(function + " needs a numeric column: " + column);
+            }
+            columnNames.add(function == null ? column : function + "(" + column + ")");
+        }
+        if (groupColumns.length == 0) {
+            addGroup(null, null);
+        }
+    }
+
+    // Empty aggregate of the same query, for another part of the table
+    private HashAggregate(HashAggregate query) {
+        schema = query.schema;
+        items = query.items;
+        columnNames = query.columnNames;
+        groupColumns = query.groupColumns;
+        itemColumns = query.itemColumns;
+        itemGroups = query.itemGroups;
+        if (groupColumns.length == 0) {
+            addGroup(null, null);
+        }
+    }
+
+    static boolean isFunction(String name) {
+        switch (name) {
+            case "COUNT":
+            case "SUM":
+            case "AVG":
+            case "MIN":
+            case "MAX":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    List<String> columnNames() {
+        return columnNames;
+    }
+
+    void add(Table.Row row) {
+        Group group = group(row);
+        for (int i = 0; i < itemColumns.length; i++) {
+            Accumulator accumulator = group.accumulators[i];
+            Object value = itemColumns[i] == -1 ? row : row.getValue(itemColumns[i]); // The row for COUNT(*)
+            if (accumulator != null && value != null) {
+                accumulator.add(value);
+            }
+        }
+    }
+
+    // Add the selected rows of a batch
+    void add(RowBatch batch) {
+        for (int i = 0; i < batch.selected; i++) {
+            add(batch.rows[batch.selection[i]]);
+        }
+    }
+
+    void add(ParallelScan.Matches matches) {
+        for (int i = 0; i < matches.size; i++) {
+            add(matches.rows[i]);
+        }
+    }
+
+    // Add the rows of a map meeting a predicate. The map is split as by ParallelScan, each part
+    // aggregated on the common ForkJoinPool and the parts merged left to right, so groups are
+    // listed as a sequential forEach would list them.
+    void addParallel(RowMap rows, RowPredicate where) {
+        merge(new Part(this, rows.spliterator(), where).invoke());
+    }
+
+    // Add the groups of an aggregate of rows that come after this one's
+    HashAggregate merge(HashAggregate other) {
+        for (Group group : other.order) {
+            Group mine = groupColumns.length == 0 ? order.get(0) : groups.get(group.key);
+            if (mine == null) {
+                groups.put(group.key, group);
+                order.add(group);
+                continue;
+            }
+            for (int i = 0; i < mine.accumulators.length; i++) {
+                if (mine.accumulators[i] != null) {
+                    mine.accumulators[i].merge(group.accumulators[i]);
+                }
+            }
+        }
+        return this;
+    }
+
+    // One row per group, its columns as in the select list.
+    // Throws IllegalArgumentException if SUM or AVG met text that is not a number.
+    ParallelScan.Matches result() {
+        ParallelScan.Matches result = new ParallelScan.Matches(order.size());
+        for (Group group : order) {
+            ArrayList<Object> values = new ArrayList<>(itemColumns.length);
+            for (int i = 0; i < itemColumns.length; i++) {
+                values.add(group.accumulators[i] != null ? group.accumulators[i].result() : group.values[itemGroups[i]]);
+            }
+            result.add(result.size, new Table.Row(values));
+        }
+        return result;
+    }
+
+    private Group group(Table.Row row) {
+        if (groupColumns.length == 0) {
+            return order.get(0);
+        }
+        Object key;
+        if (groupColumns.length == 1) {
+            key = groupKey(row, groupColumns[0]);
+        } else {
+            Object[] keys = new Object[groupColumns.length];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = groupKey(row, groupColumns[i]);
+            }
+            key = Arrays.asList(keys);
+        }
+        Group group = groups.get(key);
+        return group != null ? group : addGroup(key, row);
+    }
+
+    private Object groupKey(Table.Row row, int column) {
+        Object value = row.getValue(column);
+        return value == null ? NULL_KEY : schema.indexKey(column, value);
+    }
+
+    private Group addGroup(Object key, Table.Row row) {
+        Group group = new Group(key, new Object[groupColumns.length], new Accumulator[itemColumns.length]);
+        for (int i = 0; i < groupColumns.length; i++) {
+            group.values[i] = row.getValue(groupColumns[i]);
+        }
+        for (int i = 0; i < itemColumns.length; i++) {
+            String function = items.get(i)[0];
+            if (function == null) {
+                continue;
+            }
+            switch (function) {
+                case "COUNT":
+                    group.accumulators[i] = new Count();
+                    break;
+                case "SUM":
+                case "AVG":
+                    group.accumulators[i] = new Sum(function);
+                    break;
+                default:
+                    group.accumulators[i] = new Extreme(schema, itemColumns[i], function.equals("MIN"));
+            }
+        }
+        if (key != null) {
+            groups.put(key, group);
+        }
+        order.add(group);
+        return group;
+    }
+
+    private static final class Group {
+        final Object key; // Index keys of the GROUP BY values, null without GROUP BY
+        final Object[] values; // GROUP BY values of the group's first row
+        final Accumulator[] accumulators; // One per aggregate of the select list, null for plain columns
+
+        Group(Object key, Object[] values, Accumulator[] accumulators) {
+            this.key = key;
+            this.values = values;
+            this.accumulators = accumulators;
+        }
+    }
+
+    // Running value of one aggregate in one group. merge takes in another accumulator of the
+    // same aggregate, over rows that come after this one's.
+    private abstract static class Accumulator {
+        abstract void add(Object value);
+
+        abstract void merge(Accumulator other);
+
+        abstract Object result();
+    }
+
+    // COUNT(*), of rows, or COUNT(column), of values
+    private static final class Count extends Accumulator {
+        long count;
+
+        void add(Object value) {
+            count++;
+        }
+
+        void merge(Accumulator other) {
+            count += ((Count) other).count;
+        }
+
+        Object result() {
+            return count;
+        }
+    }
+
+    // SUM or AVG. Whole numbers, typed or untyped, add up exactly as a long and a SUM of only
+    // whole numbers is a Long; anything else, and whole numbers that would overflow the long,
+    // adds up as a double.
+    private static final class Sum extends Accumulator {
+        final String function;
+        long count;
+        long whole;
+        double fraction;
+        boolean fractional; // Some value was a DOUBLE, untyped text with a fraction, or an overflow
+        String invalid; // First untyped value that was not a number, if any
+
+        Sum(String function) {
+            this.function = function;
+        }
+
+        void add(Object value) {
+            count++;
+            if (value instanceof Integer || value instanceof Long) {
+                addWhole(((Number) value).longValue());
+            } else if (value instanceof Double) {
+                fraction += (Double) value;
+                fractional = true;
+            } else {
+                String text = value.toString();
+                double integer = RowPredicate.parseInteger(text);
+                if (!Double.isNaN(integer)) {
+                    addWhole((long) integer);
+                    return;
+                }
+                Double number = RowPredicate.parseNumber(text);
+                if (number == null) {
+                    invalid = invalid == null ? text : invalid;
+                    return;
+                }
+                fraction += number;
+                fractional = true;
+            }
+        }
+
+        void merge(Accumulator other) {
+            Sum sum = (Sum) other;
+            count += sum.count;
+            addWhole(sum.whole);
+            fraction += sum.fraction;
+            fractional |= sum.fractional;
+            invalid = invalid == null ? sum.invalid : invalid;
+        }
+
+        private void addWhole(long number) {
+            try {
+                whole = Math.addExact(whole, number);
+            } catch (ArithmeticException e) {
+                fraction += number;
+                fractional = true;
+            }
+        }
+
+        Object result() {
+            if (invalid != null) {
+                throw new IllegalArgumentException(function + " of a non-numeric value: " + invalid);
+            }
+            if (count == 0) {
+                return null;
+            }
+            if (function.equals("AVG")) {
+                return (whole + fraction) / count;
+            }
+            return fractional ? (Object) (whole + fraction) : (Object) whole;
+        }
+    }
+
+    // MIN or MAX, by index key as RANGE indexes order values; the value kept is the one stored
+    private static final class Extreme extends Accumulator {
+        final Schema schema;
+        final int column;
+        final boolean minimum;
+        Object value;
+        Object key;
+
+        Extreme(Schema schema, int column, boolean minimum) {
+            this.schema = schema;
+            this.column = column;
+            this.minimum = minimum;
+        }
+
+        void add(Object value) {
+            take(value, schema.indexKey(column, value));
+        }
+
+        void merge(Accumulator other) {
+            Extreme extreme = (Extreme) other;
+            if (extreme.value != null) {
+                take(extreme.value, extreme.key);
+            }
+        }
+
+        // The first of equal values is kept
+        private void take(Object value, Object key) {
+            int comparison = this.key == null ? -1 : RangeIndex.compareKeys(key, this.key);
+            if (this.key == null || (minimum ? comparison < 0 : comparison > 0)) {
+                this.value = value;
+                this.key = key;
+            }
+        }
+
+        Object result() {
+            return value;
+        }
+    }
+
+    // Aggregate of one part of a row map, split in halves until each covers about
+    // ParallelScan.LEAF_ROWS rows
+    private static final class Part extends RecursiveTask<HashAggregate> {
+        private static final long serialVersionUID = 1L;
+
+        private final HashAggregate query; // Supplies the empty aggregate of each leaf
+        private final RowMap.RowSpliterator part;
+        private final RowPredicate where;
+
+        Part(HashAggregate query, RowMap.RowSpliterator part, RowPredicate where) {
+            this.query = query;
+            this.part = part;
+            this.where = where;
+        }
+
+        @Override
+        protected HashAggregate compute() {
+            RowMap.RowSpliterator prefix = part.estimateSize() > ParallelScan.LEAF_ROWS ? part.trySplit() : null;
+            if (prefix == null) {
+                HashAggregate aggregate = new HashAggregate(query);
+                RowBatch batch = new RowBatch(where, aggregate::add);
+                part.forEachRemaining(batch);
+                batch.flush();
+                return aggregate;
+            }
+            Part left = new Part(query, prefix, where);
+            left.fork();
+            HashAggregate right = compute();
+            return left.join().merge(right);
+        }
+    }
+}
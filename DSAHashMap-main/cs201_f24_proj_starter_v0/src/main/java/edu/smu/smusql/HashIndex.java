@@ -0,0 +1,44 @@
+package edu.smu.smusql;
+
+import java.util.function.IntConsumer;
+
+// Secondary index answering "=" conditions: a SwissHashMap from index key to row ids
+public class HashIndex extends SecondaryIndex {
+    private final SwissHashMap<Object, RowIdSet> entries = new SwissHashMap<>();
+
+    public HashIndex(String indexName, int columnIndex) {
+        super(indexName, columnIndex);
+    }
+
+    void add(Object key, int rowId) {
+        RowIdSet ids = entries.get(key);
+        if (ids == null) {
+            ids = new RowIdSet();
+            entries.put(key, ids);
+        }
+        ids.add(rowId);
+    }
+
+    void remove(Object key, int rowId) {
+        RowIdSet ids = entries.get(key);
+        if (ids != null && ids.remove(rowId) && ids.size() == 0) {
+            entries.remove(key); // Values that leave the column leave the index
+        }
+    }
+
+    int count(Object key) {
+        RowIdSet ids = entries.get(key);
+        return ids == null ? 0 : ids.size();
+    }
+
+    void forEach(Object key, IntConsumer action) {
+        RowIdSet ids = entries.get(key);
+        if (ids != null) {
+            ids.forEach(action);
+        }
+    }
+
+    public int distinctValues() {
+        return entries.size();
+    }
+}
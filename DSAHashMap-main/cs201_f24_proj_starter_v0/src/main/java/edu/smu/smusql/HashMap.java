@@ -1,28 +1,72 @@
 package edu.smu.smusql;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 public class HashMap<K, V> {
     private Entry<K, V>[] buckets;
     private int capacity;
+    private int mask;
     private int size;
-    private static final int INITIAL_CAPACITY = 32;
+    private int resizeThreshold;
+    private int modCount; // bumped on every structural change so live iteration can fail fast
+    private HashStats stats; // null unless enableStats() was called
+    private int probes; // buckets examined by the current get/put/remove
+    private final float maxLoadFactor;
+    private static final int INITIAL_CAPACITY = 32; // must be a power of two
+    private static final float DEFAULT_MAX_LOAD_FACTOR = 0.75f;
+    private static final int MIGRATE_STEP = 8; // old buckets moved per operation during an incremental resize
+    private static final Entry<?, ?> MOVED = new Entry<>(0, null, null); // marks a migrated old bucket
+
+    // Bucket array being drained into buckets while an incremental resize is in progress (null otherwise)
+    private final boolean incrementalResize;
+    private Entry<K, V>[] oldBuckets;
+    private int oldMask;
+    private int migrateIndex;
 
     // Constructor to initialize HashMap
     public HashMap() {
-        this.capacity = INITIAL_CAPACITY;
+        this(INITIAL_CAPACITY, DEFAULT_MAX_LOAD_FACTOR);
+    }
+
+    // Constructor with an initial capacity (rounded up to a power of two) and the
+    // load factor above which the bucket array is doubled
+    public HashMap(int initialCapacity, float maxLoadFactor) {
+        this(initialCapacity, maxLoadFactor, false);
+    }
+
+    // With incrementalResize, doubling keeps the old bucket array alive and moves a few buckets
+    // on every put/get/remove instead of rehashing everything inside the put that crossed the threshold
+    public HashMap(int initialCapacity, float maxLoadFactor, boolean incrementalResize) {
+        if (initialCapacity < 1) {
+            throw new IllegalArgumentException("Initial capacity must be positive: " + initialCapacity);
+        }
+        if (!(maxLoadFactor > 0 && maxLoadFactor < 1)) {
+            throw new IllegalArgumentException("Max load factor must be between 0 and 1: " + maxLoadFactor);
+        }
+        this.maxLoadFactor = maxLoadFactor;
+        this.incrementalResize = incrementalResize;
         this.size = 0;
-        this.buckets = new Entry[capacity];
+        int cap = 2;
+        while (cap < initialCapacity) {
+            cap <<= 1;
+        }
+        allocate(cap);
     }
 
     // Entry class to store key-value pairs
     static class Entry<K, V> {
+        final int hash;
         K key;
         V value;
 
-        Entry(K key, V value) {
+        Entry(int hash, K key, V value) {
+            this.hash = hash;
             this.key = key;
             this.value = value;
         }
@@ -40,100 +84,416 @@ public class HashMap<K, V> {
         }
     }
 
-    // Hash function to get the index for a key
-    private int getBucketIndex(K key) {
-        int hashCode = Objects.hashCode(key);
-        return Math.abs(hashCode) % capacity;
+    // A generic array cannot be created directly; the array only ever holds Entry<K, V>.
+    // The threshold leaves a bucket empty even once it is crossed, so probes of an old array
+    // being migrated always end.
+    @SuppressWarnings("unchecked")
+    private void allocate(int newCapacity) {
+        capacity = newCapacity;
+        mask = newCapacity - 1;
+        resizeThreshold = Math.min((int) (newCapacity * maxLoadFactor), newCapacity - 2);
+        buckets = (Entry<K, V>[]) new Entry<?, ?>[newCapacity];
+    }
+
+    // MOVED as an entry of this map; the cast is safe as it holds no key or value
+    @SuppressWarnings("unchecked")
+    private Entry<K, V> moved() {
+        return (Entry<K, V>) MOVED;
+    }
+
+    // Hash function; the high bits are folded in because the index only keeps the low bits
+    static int hash(Object key) {
+        int h = Objects.hashCode(key) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // How far the entry sitting in bucket index is from its home bucket
+    private int probeDistance(int hash, int index) {
+        return (index - (hash & mask)) & mask;
     }
 
-    // Resize and rehash only when the array is full
+    // Resize once the load factor is exceeded, either rehashing everything now
+    // or starting an incremental migration
     private void resize() {
-        int newCapacity = capacity * 2;
-        Entry<K, V>[] newBuckets = new Entry[newCapacity];
-        for (Entry<K, V> entry : buckets) {
+        finishResize(); // The previous migration must be complete before the arrays are swapped again
+        modCount++;
+        if (stats != null) {
+            stats.resizeCount++;
+        }
+        Entry<K, V>[] previousBuckets = buckets;
+        int previousMask = mask;
+        allocate(capacity * 2);
+        if (incrementalResize) {
+            oldBuckets = previousBuckets;
+            oldMask = previousMask;
+            migrateIndex = 0;
+            return;
+        }
+        long start = stats != null ? System.nanoTime() : 0;
+        for (Entry<K, V> entry : previousBuckets) {
             if (entry != null) {
-                int newIndex = Math.abs(entry.key.hashCode()) % newCapacity;
-                while (newBuckets[newIndex] != null) {
-                    newIndex = (newIndex + 1) % newCapacity;  // Linear probing
-                }
-                newBuckets[newIndex] = entry;
+                insertNew(entry);
             }
         }
-        capacity = newCapacity;
-        buckets = newBuckets;
+        if (stats != null) {
+            stats.rehashNanos += System.nanoTime() - start;
+        }
     }
 
-    // Put key-value pair into the hash map
-    public void put(K key, V value) {
-        int index = getBucketIndex(key);
+    // Move the next MIGRATE_STEP old buckets into the current bucket array
+    private void migrateStep() {
+        if (oldBuckets == null) {
+            return;
+        }
+        long start = stats != null ? System.nanoTime() : 0;
+        int end = Math.min(migrateIndex + MIGRATE_STEP, oldBuckets.length);
+        for (int i = migrateIndex; i < end; i++) {
+            Entry<K, V> entry = oldBuckets[i];
+            if (entry != null && entry != MOVED) {
+                insertNew(entry);
+                oldBuckets[i] = moved();
+            }
+        }
+        migrateIndex = end;
+        modCount++;
+        if (end == oldBuckets.length) {
+            oldBuckets = null;
+        }
+        if (stats != null) {
+            stats.rehashNanos += System.nanoTime() - start;
+        }
+    }
 
-        // Linear probing to find an empty slot or update existing key
-        while (buckets[index] != null) {
-            if (buckets[index].getKey().equals(key)) {
-                buckets[index].setValue(value);  // Update value if key exists
+    // Complete any in-progress incremental resize
+    private void finishResize() {
+        while (oldBuckets != null) {
+            migrateStep();
+        }
+    }
+
+    // Find key in the old bucket array by plain linear probing.
+    // Nothing is inserted there any more, so MOVED buckets can simply be probed past. Buckets below
+    // migrateIndex have all been migrated, so the probe starts at migrateIndex when the key's home
+    // bucket lies below it (every bucket in between is occupied or MOVED). A cluster wrapping past
+    // the end continues in the migrated prefix, which keeps its MOVED markers, so the probe wraps
+    // too and only an empty bucket ends it.
+    private int findOldIndex(Object key, int hash) {
+        int index = hash & oldMask;
+        if (index < migrateIndex) {
+            index = migrateIndex;
+        }
+        Entry<K, V> current;
+        while ((current = oldBuckets[index]) != null) {
+            probes++;
+            if (current != MOVED && current.hash == hash && Objects.equals(current.key, key)) {
+                return index;
+            }
+            index = (index + 1) & oldMask;
+        }
+        probes++;
+        return -1;
+    }
+
+    // Robin Hood insertion of an entry whose key is known to be absent:
+    // an entry closer to its home bucket gives up its slot to the one being carried
+    private void insertNew(Entry<K, V> entry) {
+        int index = entry.hash & mask;
+        int dist = 0;
+        while (true) {
+            Entry<K, V> current = buckets[index];
+            if (current == null) {
+                buckets[index] = entry;
                 return;
             }
-            index = (index + 1) % capacity;
+            int currentDist = probeDistance(current.hash, index);
+            if (currentDist < dist) {
+                buckets[index] = entry;
+                entry = current;
+                dist = currentDist;
+            }
+            index = (index + 1) & mask;
+            dist++;
+        }
+    }
+
+    // Returns the bucket holding key, or -1 if absent.
+    // The search stops as soon as it meets an entry closer to home than the key would be.
+    private int findIndex(Object key, int hash) {
+        int index = hash & mask;
+        int dist = 0;
+        while (true) {
+            Entry<K, V> current = buckets[index];
+            if (current == null || probeDistance(current.hash, index) < dist) {
+                probes += dist + 1;
+                return -1;
+            }
+            if (current.hash == hash && Objects.equals(current.key, key)) {
+                probes += dist + 1;
+                return index;
+            }
+            index = (index + 1) & mask;
+            dist++;
+        }
+    }
+
+    // Put key-value pair into the hash map
+    public void put(K key, V value) {
+        migrateStep();
+        probes = 0;
+        int hash = hash(key);
+        int index = findIndex(key, hash);
+        int oldIndex = index == -1 && oldBuckets != null ? findOldIndex(key, hash) : -1;
+        if (stats != null) {
+            stats.recordPut(probes);
+        }
+        if (index != -1) {
+            buckets[index].setValue(value); // Update value if key exists
+            return;
+        }
+        if (oldIndex != -1) {
+            oldBuckets[oldIndex].setValue(value); // Not migrated yet; the entry carries the new value over
+            return;
         }
 
-        // Insert new entry
-        buckets[index] = new Entry<>(key, value);
+        insertNew(new Entry<>(hash, key, value));
         size++;
+        modCount++;
 
-        // Resize if all buckets are full (array "full" condition)
-        if (size == capacity) {
+        if (size > resizeThreshold) {
             resize();
         }
     }
 
     // Get value for a given key
     public V get(K key) {
-        int index = getBucketIndex(key);
-
-        // Linear probing to find the key
-        while (buckets[index] != null) {
-            if (buckets[index].getKey().equals(key)) {
-                return buckets[index].getValue();
+        migrateStep();
+        probes = 0;
+        int hash = hash(key);
+        V value = null;
+        int index = findIndex(key, hash);
+        if (index != -1) {
+            value = buckets[index].getValue();
+        } else if (oldBuckets != null) {
+            index = findOldIndex(key, hash);
+            if (index != -1) {
+                value = oldBuckets[index].getValue();
             }
-            index = (index + 1) % capacity;
         }
-
-        return null; // Key not found
+        if (stats != null) {
+            stats.recordGet(probes);
+        }
+        return value;
     }
 
     // Remove key-value pair from the hash map
     public void remove(K key) {
-        int index = getBucketIndex(key);
-
-        // Linear probing to find the key
-        while (buckets[index] != null) {
-            if (buckets[index].getKey().equals(key)) {
-                buckets[index] = null;  // Remove entry
+        migrateStep();
+        probes = 0;
+        int hash = hash(key);
+        int index = findIndex(key, hash);
+        if (index != -1) {
+            removeAt(index);
+        } else if (oldBuckets != null) {
+            index = findOldIndex(key, hash);
+            if (index != -1) {
+                oldBuckets[index] = moved(); // Keeps the old probe chains intact
                 size--;
-                // Rehash subsequent entries to fill gaps
-                index = (index + 1) % capacity;
-                while (buckets[index] != null) {
-                    Entry<K, V> entryToRehash = buckets[index];
-                    buckets[index] = null;
-                    size--;
-                    put(entryToRehash.getKey(), entryToRehash.getValue());
-                    index = (index + 1) % capacity;
-                }
-                return;
+                modCount++;
             }
-            index = (index + 1) % capacity;
+        }
+        if (stats != null) {
+            stats.recordRemove(probes);
         }
     }
 
-    // Get all entries as an Iterable
+    // Backward-shift deletion: pull the rest of the cluster one bucket closer to home
+    // until an empty bucket or an entry already in its home bucket is reached
+    private void removeAt(int index) {
+        int next = (index + 1) & mask;
+        while (buckets[next] != null && probeDistance(buckets[next].hash, next) > 0) {
+            buckets[index] = buckets[next];
+            index = next;
+            next = (next + 1) & mask;
+        }
+        buckets[index] = null;
+        size--;
+        modCount++;
+    }
+
+    // Start recording probe lengths and resize events
+    public void enableStats() {
+        if (stats == null) {
+            stats = new HashStats();
+        }
+    }
+
+    public void disableStats() {
+        stats = null;
+    }
+
+    // Current stats with size, capacity and longest cluster filled in, or null if not enabled
+    public HashStats getStats() {
+        if (stats != null) {
+            stats.size = size;
+            stats.capacity = capacity;
+            stats.longestCluster = HashStats.longestCluster(buckets);
+        }
+        return stats;
+    }
+
+    // Live view of all entries; iterating it walks the bucket array in place
+    // and the iterator supports remove()
     public Iterable<Entry<K, V>> entrySet() {
-        List<Entry<K, V>> entries = new ArrayList<>(size);
+        return EntryIterator::new;
+    }
+
+    // Visit every key-value pair in place without allocating
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        finishResize();
+        int expectedModCount = modCount;
         for (Entry<K, V> entry : buckets) {
             if (entry != null) {
-                entries.add(entry);
+                action.accept(entry.key, entry.value);
+            }
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    // Walks the buckets downwards, starting from an empty bucket. Backward-shift deletion only
+    // ever moves entries from later buckets of the same cluster into earlier ones, and a cluster
+    // never spans the empty starting bucket, so entries shifted by remove() have been visited already.
+    private final class EntryIterator implements Iterator<Entry<K, V>> {
+        private int index; // last bucket examined
+        private int remaining; // buckets not yet examined
+        private int lastReturned = -1;
+        private int expectedModCount;
+
+        EntryIterator() {
+            finishResize();
+            int start = 0;
+            while (buckets[start] != null) {
+                start++;
+            }
+            index = start;
+            remaining = capacity - 1;
+            expectedModCount = modCount;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (remaining > 0) {
+                int previous = (index - 1) & mask;
+                if (buckets[previous] != null) {
+                    return true;
+                }
+                index = previous;
+                remaining--;
+            }
+            return false;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            checkForComodification();
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            index = (index - 1) & mask;
+            remaining--;
+            lastReturned = index;
+            return buckets[index];
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == -1) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            removeAt(lastReturned);
+            lastReturned = -1;
+            expectedModCount = modCount;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    // Spliterator over the entries, walking the bucket array in place.
+    // It splits by halving its bucket range, so parallel traversals visit entries in bucket order.
+    public Spliterator<Entry<K, V>> spliterator() {
+        finishResize();
+        return new EntrySpliterator(0, capacity, modCount);
+    }
+
+    private final class EntrySpliterator implements Spliterator<Entry<K, V>> {
+        private int index;
+        private final int fence;
+        private final int expectedModCount;
+
+        EntrySpliterator(int origin, int fence, int expectedModCount) {
+            this.index = origin;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Entry<K, V>> action) {
+            while (index < fence) {
+                Entry<K, V> entry = buckets[index++];
+                if (entry != null) {
+                    action.accept(entry);
+                    checkForComodification();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Entry<K, V>> action) {
+            Entry<K, V>[] table = buckets;
+            for (; index < fence; index++) {
+                if (table[index] != null) {
+                    action.accept(table[index]);
+                }
+            }
+            checkForComodification();
+        }
+
+        // Hand the lower half of the remaining buckets to a new spliterator
+        @Override
+        public Spliterator<Entry<K, V>> trySplit() {
+            int mid = (index + fence) >>> 1;
+            if (mid <= index) {
+                return null;
+            }
+            EntrySpliterator prefix = new EntrySpliterator(index, mid, expectedModCount);
+            index = mid;
+            return prefix;
+        }
+
+        // Assumes entries are spread evenly over the buckets
+        @Override
+        public long estimateSize() {
+            return (long) size * (fence - index) / capacity;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.NONNULL | Spliterator.DISTINCT | Spliterator.ORDERED;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
             }
         }
-        return entries;
     }
 
 
@@ -0,0 +1,112 @@
+package edu.smu.smusql;
+
+// Health counters for an open-addressing hash table (HashMap or IntRowMap), also kept by HamtRowMap.
+// Probe length is the number of slots examined by one get/put/remove.
+// The map only records into this object while stats are enabled on it; size, capacity and
+// longest cluster are filled in by the map each time the stats are requested.
+public class HashStats {
+    long getCount, getProbeTotal;
+    long putCount, putProbeTotal;
+    long removeCount, removeProbeTotal;
+    int getProbeMax, putProbeMax, removeProbeMax;
+    int resizeCount;
+    long rehashNanos; // time spent moving entries into a bigger array, incremental steps included
+
+    int size;
+    int capacity;
+    int longestCluster; // longest run of occupied slots
+
+    void recordGet(int probes) {
+        getCount++;
+        getProbeTotal += probes;
+        getProbeMax = Math.max(getProbeMax, probes);
+    }
+
+    void recordPut(int probes) {
+        putCount++;
+        putProbeTotal += probes;
+        putProbeMax = Math.max(putProbeMax, probes);
+    }
+
+    void recordRemove(int probes) {
+        removeCount++;
+        removeProbeTotal += probes;
+        removeProbeMax = Math.max(removeProbeMax, probes);
+    }
+
+    // Longest run of non-null slots, counting a run that wraps from the end to the start once
+    static int longestCluster(Object[] slots) {
+        int n = slots.length;
+        int start = 0;
+        while (start < n && slots[start] != null) {
+            start++;
+        }
+        if (start == n) {
+            return n;
+        }
+        int longest = 0;
+        int run = 0;
+        for (int i = 1; i <= n; i++) {
+            if (slots[(start + i) % n] != null) {
+                longest = Math.max(longest, ++run);
+            } else {
+                run = 0;
+            }
+        }
+        return longest;
+    }
+
+    public double averageGetProbe() {
+        return getCount == 0 ? 0 : (double) getProbeTotal / getCount;
+    }
+
+    public double averagePutProbe() {
+        return putCount == 0 ? 0 : (double) putProbeTotal / putCount;
+    }
+
+    public double averageRemoveProbe() {
+        return removeCount == 0 ? 0 : (double) removeProbeTotal / removeCount;
+    }
+
+    public int getMaxGetProbe() {
+        return getProbeMax;
+    }
+
+    public int getMaxPutProbe() {
+        return putProbeMax;
+    }
+
+    public int getMaxRemoveProbe() {
+        return removeProbeMax;
+    }
+
+    public int getResizeCount() {
+        return resizeCount;
+    }
+
+    public double getRehashMillis() {
+        return rehashNanos / 1_000_000.0;
+    }
+
+    public int getLongestCluster() {
+        return longestCluster;
+    }
+
+    public double getLoadFactor() {
+        return capacity == 0 ? 0 : (double) size / capacity;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("size: %d%ncapacity: %d%nload factor: %.3f%nlongest cluster: %d%n"
+                        + "get: %d calls, avg probe %.2f, max probe %d%n"
+                        + "put: %d calls, avg probe %.2f, max probe %d%n"
+                        + "remove: %d calls, avg probe %.2f, max probe %d%n"
+                        + "resizes: %d, rehash time: %.3f ms",
+                size, capacity, getLoadFactor(), longestCluster,
+                getCount, averageGetProbe(), getProbeMax,
+                putCount, averagePutProbe(), putProbeMax,
+                removeCount, averageRemoveProbe(), removeProbeMax,
+                resizeCount, getRehashMillis());
+    }
+}
@@ -0,0 +1,133 @@
+package edu.smu.smusql;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Opt-in benchmark running the workload of Main.autoEvaluate against differently declared or
+// indexed tables, one variant at a time. Main and PerformanceEvaluator keep the plain schema.
+//   mvn exec:java -Dexec.mainClass=edu.smu.smusql.IndexBenchmark -Dexec.args="plain bitmap-index"
+// With no arguments every variant runs. The primary-key variant rejects the duplicate random ids
+// the plain schema accepts, so its tables end up with fewer rows than the others.
+public class IndexBenchmark {
+    private static final int INITIAL_ROWS = 50;
+    private static final int QUERIES = 100000;
+    private static final String[] CITIES = {"New York", "Los Angeles", "Chicago", "Boston", "Miami", "Seattle", "Austin", "Dallas", "Atlanta", "Denver"};
+    private static final String[] CATEGORIES = {"Electronics", "Appliances", "Clothing", "Furniture", "Toys", "Sports", "Books", "Beauty", "Garden"};
+
+    private static final String[] PLAIN_TABLES = {
+            "CREATE TABLE users (id, name, age, city)",
+            "CREATE TABLE products (id, name, price, category)",
+            "CREATE TABLE orders (id, user_id, product_id, quantity)"
+    };
+
+    // Statements setting up each variant's tables, in the order the variants run by default
+    private static final Map<String, List<String>> VARIANTS = new LinkedHashMap<>();
+
+    static {
+        VARIANTS.put("plain", List.of(PLAIN_TABLES));
+        VARIANTS.put("primary-key", List.of(
+                "CREATE TABLE users (id PRIMARY KEY, name, age, city)",
+                "CREATE TABLE products (id PRIMARY KEY, name, price, category)",
+                "CREATE TABLE orders (id PRIMARY KEY, user_id, product_id, quantity)"));
+        VARIANTS.put("hash-index", plainTablesAnd(
+                "CREATE INDEX users_city ON users (city)",
+                "CREATE INDEX products_category ON products (category)"));
+        VARIANTS.put("bitmap-index", plainTablesAnd(
+                "CREATE INDEX users_city ON users (city) USING BITMAP",
+                "CREATE INDEX products_category ON products (category) USING BITMAP"));
+        VARIANTS.put("range-index", plainTablesAnd(
+                "CREATE INDEX users_age ON users (age) USING RANGE",
+                "CREATE INDEX products_price ON products (price) USING RANGE"));
+    }
+
+    private static List<String> plainTablesAnd(String... indexes) {
+        List<String> setup = new ArrayList<>(List.of(PLAIN_TABLES));
+        setup.addAll(List.of(indexes));
+        return setup;
+    }
+
+    public static void main(String[] args) {
+        List<String> variants = args.length > 0 ? List.of(args) : new ArrayList<>(VARIANTS.keySet());
+        for (String variant : variants) {
+            List<String> setup = VARIANTS.get(variant);
+            if (setup == null) {
+                throw new IllegalArgumentException("Unknown variant: " + variant + " (expected one of " + VARIANTS.keySet() + ")");
+            }
+            run(variant, setup);
+        }
+    }
+
+    private static void run(String variant, List<String> setup) {
+        Engine engine = new Engine();
+        for (String statement : setup) {
+            engine.executeSQL(statement);
+        }
+        Random random = new Random(201);
+        prepopulate(engine, random);
+        long start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            engine.executeSQL(nextQuery(random));
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-16s %8.1f ms for %d queries%n", variant, elapsed / 1e6, QUERIES);
+    }
+
+    private static void prepopulate(Engine engine, Random random) {
+        for (int i = 0; i < INITIAL_ROWS; i++) {
+            engine.executeSQL(String.format("INSERT INTO users VALUES (%d, 'User%d', %d, '%s')", i, i, 20 + (i % 41), pick(random, CITIES)));
+        }
+        for (int i = 0; i < INITIAL_ROWS; i++) {
+            engine.executeSQL(String.format("INSERT INTO products VALUES (%d, 'Product%d', %.2f, '%s')", i, i, 10.0 + (i % 990), pick(random, CATEGORIES)));
+        }
+        for (int i = 0; i < INITIAL_ROWS; i++) {
+            engine.executeSQL(String.format("INSERT INTO orders VALUES (%d, %d, %d, %d)", i, random.nextInt(9999), random.nextInt(9999), random.nextInt(1, 100)));
+        }
+    }
+
+    // The query mix of Main.autoEvaluate: inserts, full selects, updates and deletes by id,
+    // range selects and updates by city or category, in equal shares
+    private static String nextQuery(Random random) {
+        int table = random.nextInt(3);
+        switch (random.nextInt(6)) {
+            case 0:
+                if (table == 0) {
+                    int id = random.nextInt(100000) + 10000;
+                    return "INSERT INTO users VALUES (" + id + ", 'User" + id + "', " + (random.nextInt(60) + 20) + ", '" + pick(random, CITIES) + "')";
+                } else if (table == 1) {
+                    int id = random.nextInt(100000) + 10000;
+                    return "INSERT INTO products VALUES (" + id + ", 'Product" + id + "', " + (50 + random.nextDouble() * 1000) + ", '" + pick(random, CATEGORIES) + "')";
+                }
+                return "INSERT INTO orders VALUES (" + (random.nextInt(100000) + 1) + ", " + (random.nextInt(10000) + 1) + ", " + (random.nextInt(1000) + 1) + ", " + (random.nextInt(10) + 1) + ")";
+            case 1:
+                return "SELECT * FROM " + (table == 0 ? "users" : table == 1 ? "products" : "orders");
+            case 2:
+                if (table == 0) {
+                    return "UPDATE users SET age = " + (random.nextInt(60) + 20) + " WHERE id = " + (random.nextInt(100000) + 1);
+                } else if (table == 1) {
+                    return "UPDATE products SET price = " + (50 + random.nextDouble() * 1000) + " WHERE id = " + (random.nextInt(100000) + 1);
+                }
+                return "UPDATE orders SET quantity = " + (random.nextInt(10) + 1) + " WHERE id = " + (random.nextInt(100000) + 1);
+            case 3:
+                return "DELETE FROM " + (table == 0 ? "users" : table == 1 ? "products" : "orders") + " WHERE id = " + (random.nextInt(100000) + 1);
+            case 4:
+                if (table % 2 == 0) {
+                    int minAge = random.nextInt(20) + 20;
+                    return "SELECT * FROM users WHERE age > " + minAge + " AND age < " + (minAge + random.nextInt(30));
+                }
+                double minPrice = 50 + random.nextDouble() * 200;
+                return "SELECT * FROM products WHERE price > " + minPrice + " AND price < " + (minPrice + random.nextDouble() * 500);
+            default:
+                if (table % 2 == 0) {
+                    return "UPDATE users SET age = " + (random.nextInt(60) + 20) + " WHERE city = '" + pick(random, CITIES) + "'";
+                }
+                return "UPDATE products SET price = " + (50 + random.nextDouble() * 1000) + " WHERE category = '" + pick(random, CATEGORIES) + "'";
+        }
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
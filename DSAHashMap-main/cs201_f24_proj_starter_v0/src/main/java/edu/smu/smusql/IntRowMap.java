@@ -0,0 +1,489 @@
+package edu.smu.smusql;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+// Open-addressing map from primitive int keys to rows.
+// Keys and rows live in two parallel arrays, so no Integer or Entry objects are allocated per row.
+// A null in the values array marks an empty slot, which is why null rows cannot be stored.
+public class IntRowMap implements RowMap {
+    private static final int INITIAL_CAPACITY = 32; // must be a power of two
+    private static final float MAX_LOAD_FACTOR = 0.75f;
+    private static final int MIGRATE_STEP = 8; // old slots moved per operation during an incremental resize
+    private static final Table.Row MOVED = new Table.Row(new ArrayList<>()); // marks a migrated old slot
+
+    private int[] keys;
+    private Table.Row[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+    private int modCount; // bumped on every structural change so live iteration can fail fast
+    private HashStats stats; // null unless enableStats() was called
+    private int probes; // slots examined by the current get/put/remove
+
+    // Arrays being drained into keys/values while an incremental resize is in progress (null otherwise)
+    private final boolean incrementalResize;
+    private int[] oldKeys;
+    private Table.Row[] oldValues;
+    private int oldMask;
+    private int migrateIndex;
+
+    // Constructor to initialize the map
+    public IntRowMap() {
+        this(false);
+    }
+
+    public IntRowMap(boolean incrementalResize) {
+        this(INITIAL_CAPACITY, incrementalResize);
+    }
+
+    // Constructor sized so that expectedSize rows fit without resizing.
+    // With incrementalResize, growing keeps the old arrays alive and moves a few slots on every
+    // put/get/remove instead of rehashing everything inside the put that crossed the threshold.
+    public IntRowMap(int expectedSize, boolean incrementalResize) {
+        this.incrementalResize = incrementalResize;
+        int capacity = INITIAL_CAPACITY;
+        while (capacity * MAX_LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Table.Row[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * MAX_LOAD_FACTOR);
+    }
+
+    // Spread sequential keys across the table (murmur3 finalizer).
+    // The low bits of a plain multiplicative hash form a regular progression for sequential keys,
+    // which lines up into clusters of a thousand slots and more near the maximum load factor.
+    static int mix(int key) {
+        int h = key ^ (key >>> 16);
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    // Returns the slot holding key in the current arrays, or -1 if absent
+    private int findSlot(int[] keys, Table.Row[] values, int mask, int key) {
+        int index = mix(key) & mask;
+        int examined = 1;
+        Table.Row value;
+        while ((value = values[index]) != null) {
+            if (value != MOVED && keys[index] == key) {
+                probes += examined;
+                return index;
+            }
+            index = (index + 1) & mask;
+            examined++;
+        }
+        probes += examined;
+        return -1;
+    }
+
+    // Returns the slot holding key in the old arrays, or -1 if absent.
+    // Slots below migrateIndex have all been migrated, so the probe starts at migrateIndex when the
+    // key's home slot lies below it (every slot in between is occupied or MOVED). MOVED slots are
+    // probed past, including those of the migrated prefix a cluster wrapping past the end
+    // continues in, so only an empty slot ends the probe.
+    private int findOldSlot(int key) {
+        int index = mix(key) & oldMask;
+        if (index < migrateIndex) {
+            index = migrateIndex;
+        }
+        int examined = 1;
+        Table.Row value;
+        while ((value = oldValues[index]) != null) {
+            if (value != MOVED && oldKeys[index] == key) {
+                probes += examined;
+                return index;
+            }
+            index = (index + 1) & oldMask;
+            examined++;
+        }
+        probes += examined;
+        return -1;
+    }
+
+    // Put key-row pair into the map, replacing any existing row for key
+    public void put(int key, Table.Row value) {
+        if (value == null) {
+            throw new IllegalArgumentException("IntRowMap cannot store null rows");
+        }
+        migrateStep();
+        probes = 0;
+        int slot = findSlot(keys, values, mask, key);
+        int oldSlot = slot == -1 && oldValues != null ? findOldSlot(key) : -1;
+        if (stats != null) {
+            stats.recordPut(probes);
+        }
+        if (slot != -1) {
+            values[slot] = value;
+            return;
+        }
+        if (oldSlot != -1) {
+            oldValues[oldSlot] = value; // Not migrated yet; it will be carried over with its new row
+            return;
+        }
+        insertAbsent(key, value);
+        size++;
+        modCount++;
+        if (size > resizeThreshold) {
+            grow();
+        }
+    }
+
+    // Place a key known to be absent into the current arrays
+    private void insertAbsent(int key, Table.Row value) {
+        int index = mix(key) & mask;
+        while (values[index] != null) {
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+    }
+
+    // Get the row for key, or null if absent
+    public Table.Row get(int key) {
+        migrateStep();
+        probes = 0;
+        Table.Row row = null;
+        int slot = findSlot(keys, values, mask, key);
+        if (slot != -1) {
+            row = values[slot];
+        } else if (oldValues != null) {
+            slot = findOldSlot(key);
+            if (slot != -1) {
+                row = oldValues[slot];
+            }
+        }
+        if (stats != null) {
+            stats.recordGet(probes);
+        }
+        return row;
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    // Remove key and return its row (null if absent).
+    // Uses backward-shift deletion, so no tombstones are left behind in the current arrays.
+    public Table.Row remove(int key) {
+        migrateStep();
+        probes = 0;
+        Table.Row removed = null;
+        int slot = findSlot(keys, values, mask, key);
+        if (slot != -1) {
+            removed = values[slot];
+            deleteSlot(slot);
+        } else if (oldValues != null) {
+            slot = findOldSlot(key);
+            if (slot != -1) {
+                removed = oldValues[slot];
+                oldValues[slot] = MOVED; // Keeps the old probe chains intact until the arrays are dropped
+                size--;
+                modCount++;
+            }
+        }
+        if (stats != null) {
+            stats.recordRemove(probes);
+        }
+        return removed;
+    }
+
+    // Empty the slot and pull later members of its cluster back to close the gap
+    private void deleteSlot(int hole) {
+        int index = (hole + 1) & mask;
+        while (values[index] != null) {
+            int ideal = mix(keys[index]) & mask;
+            // Move the entry only if the hole lies on its probe path (between ideal and index)
+            if (((index - ideal) & mask) >= ((index - hole) & mask)) {
+                keys[hole] = keys[index];
+                values[hole] = values[index];
+                hole = index;
+            }
+            index = (index + 1) & mask;
+        }
+        values[hole] = null;
+        size--;
+        modCount++;
+    }
+
+    // Double the arrays, either rehashing everything now or starting an incremental migration
+    private void grow() {
+        finishResize(); // The previous migration must be complete before the arrays are swapped again
+        modCount++;
+        if (stats != null) {
+            stats.resizeCount++;
+        }
+        int[] previousKeys = keys;
+        Table.Row[] previousValues = values;
+        int previousMask = mask;
+        allocate(previousKeys.length * 2);
+        if (incrementalResize) {
+            oldKeys = previousKeys;
+            oldValues = previousValues;
+            oldMask = previousMask;
+            migrateIndex = 0;
+            return;
+        }
+        long start = stats != null ? System.nanoTime() : 0;
+        for (int i = 0; i < previousKeys.length; i++) {
+            if (previousValues[i] != null) {
+                insertAbsent(previousKeys[i], previousValues[i]);
+            }
+        }
+        if (stats != null) {
+            stats.rehashNanos += System.nanoTime() - start;
+        }
+    }
+
+    // Move the next MIGRATE_STEP old slots into the current arrays
+    private void migrateStep() {
+        if (oldValues == null) {
+            return;
+        }
+        long start = stats != null ? System.nanoTime() : 0;
+        int end = Math.min(migrateIndex + MIGRATE_STEP, oldValues.length);
+        for (int i = migrateIndex; i < end; i++) {
+            Table.Row value = oldValues[i];
+            if (value != null && value != MOVED) {
+                insertAbsent(oldKeys[i], value);
+                oldValues[i] = MOVED;
+            }
+        }
+        migrateIndex = end;
+        modCount++;
+        if (end == oldValues.length) {
+            oldKeys = null;
+            oldValues = null;
+        }
+        if (stats != null) {
+            stats.rehashNanos += System.nanoTime() - start;
+        }
+    }
+
+    // Start recording probe lengths and resize events
+    public void enableStats() {
+        if (stats == null) {
+            stats = new HashStats();
+        }
+    }
+
+    public void disableStats() {
+        stats = null;
+    }
+
+    // Current stats with size, capacity and longest cluster filled in, or null if not enabled
+    public HashStats getStats() {
+        if (stats != null) {
+            stats.size = size;
+            stats.capacity = values.length;
+            stats.longestCluster = HashStats.longestCluster(values);
+        }
+        return stats;
+    }
+
+    // Complete any in-progress incremental resize
+    private void finishResize() {
+        while (oldValues != null) {
+            migrateStep();
+        }
+    }
+
+    // Visit every key-row pair in place without allocating
+    public void forEach(Visitor visitor) {
+        finishResize();
+        int expectedModCount = modCount;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                visitor.visit(keys[i], values[i]);
+            }
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    // Live cursor over the map that supports removing the current row
+    public Cursor cursor() {
+        return new SlotCursor();
+    }
+
+    // Walks the slots downwards, starting from an empty slot. Backward-shift deletion only ever
+    // moves entries from later slots of the same cluster into earlier ones, and a cluster never
+    // spans the empty starting slot, so rows shifted by remove() have always been visited already.
+    private final class SlotCursor implements Cursor {
+        private int index; // last slot examined
+        private int remaining; // slots not yet examined
+        private int current = -1;
+        private int expectedModCount;
+
+        private SlotCursor() {
+            finishResize();
+            int start = 0;
+            while (values[start] != null) {
+                start++;
+            }
+            index = start;
+            remaining = values.length - 1;
+            expectedModCount = modCount;
+        }
+
+        @Override
+        public boolean next() {
+            checkForComodification();
+            while (remaining > 0) {
+                index = (index - 1) & mask;
+                remaining--;
+                if (values[index] != null) {
+                    current = index;
+                    return true;
+                }
+            }
+            current = -1;
+            return false;
+        }
+
+        @Override
+        public int key() {
+            checkCurrent();
+            return keys[current];
+        }
+
+        @Override
+        public Table.Row row() {
+            checkCurrent();
+            return values[current];
+        }
+
+        @Override
+        public void remove() {
+            checkCurrent();
+            deleteSlot(current);
+            current = -1;
+            expectedModCount = modCount;
+        }
+
+        private void checkCurrent() {
+            if (current == -1) {
+                throw new IllegalStateException("Cursor is not positioned on a row");
+            }
+            checkForComodification();
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    // Spliterator over the rows, walking the slot array in place.
+    // It splits by halving its slot range, so parallel traversals visit rows in slot order.
+    public RowSpliterator spliterator() {
+        finishResize();
+        return new SlotSpliterator(0, values.length, modCount);
+    }
+
+    private final class SlotSpliterator implements RowSpliterator {
+        private int index;
+        private final int fence;
+        private final int expectedModCount;
+
+        SlotSpliterator(int origin, int fence, int expectedModCount) {
+            this.index = origin;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Table.Row> action) {
+            while (index < fence) {
+                Table.Row row = values[index++];
+                if (row != null) {
+                    action.accept(row);
+                    checkForComodification();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean tryAdvance(Visitor visitor) {
+            while (index < fence) {
+                Table.Row row = values[index++];
+                if (row != null) {
+                    visitor.visit(keys[index - 1], row);
+                    checkForComodification();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Table.Row> action) {
+            Table.Row[] rows = values;
+            for (; index < fence; index++) {
+                if (rows[index] != null) {
+                    action.accept(rows[index]);
+                }
+            }
+            checkForComodification();
+        }
+
+        @Override
+        public void forEachRemaining(Visitor visitor) {
+            int[] rowKeys = keys;
+            Table.Row[] rows = values;
+            for (; index < fence; index++) {
+                if (rows[index] != null) {
+                    visitor.visit(rowKeys[index], rows[index]);
+                }
+            }
+            checkForComodification();
+        }
+
+        // Hand the lower half of the remaining slots to a new spliterator
+        @Override
+        public SlotSpliterator trySplit() {
+            int mid = (index + fence) >>> 1;
+            if (mid <= index) {
+                return null;
+            }
+            SlotSpliterator prefix = new SlotSpliterator(index, mid, expectedModCount);
+            index = mid;
+            return prefix;
+        }
+
+        // Assumes rows are spread evenly over the slots
+        @Override
+        public long estimateSize() {
+            return (long) size * (fence - index) / values.length;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.NONNULL | Spliterator.ORDERED;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    // Get the size of the map
+    public int size() {
+        return size;
+    }
+}
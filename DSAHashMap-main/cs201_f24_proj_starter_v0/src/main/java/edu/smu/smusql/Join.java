@@ -0,0 +1,180 @@
+package edu.smu.smusql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Equi-join of two tables on one column of each (SELECT ... FROM left [LEFT] JOIN right ON ...).
+// A joined row holds the left row's values followed by the right row's, under the columns of
+// schema, named "table.column". A LEFT JOIN pairs a left row without a match with nulls.
+// Join keys are index keys (Table.indexKey), so rows pair up when a WHERE "=" would find their
+// values equal. The inputs are ResultSets of each table's own WHERE conditions; joined rows go to
+// an Output, which can stop the join early.
+final class Join {
+    final Table left;
+    final Table right;
+    final int leftColumn;
+    final int rightColumn;
+    final boolean leftJoin;
+    final Schema schema; // Columns of the joined rows
+
+    // Takes joined rows; returns false once it wants no more
+    interface Output {
+        boolean add(Table.Row row);
+    }
+
+    Join(Table left, Table right, int leftColumn, int rightColumn, boolean leftJoin) {
+        this.left = left;
+        this.right = right;
+        this.leftColumn = leftColumn;
+        this.rightColumn = rightColumn;
+        this.leftJoin = leftJoin;
+        List<String> columns = new ArrayList<>();
+        List<ColumnType> types = new ArrayList<>();
+        for (Table table : new Table[]{left, right}) {
+            for (String column : table.getColumnNames()) {
+                columns.add(table.tableName + "." + column);
+            }
+            types.addAll(table.columnTypes);
+        }
+        schema = new Schema(columns, types);
+    }
+
+    // Load the build input into a hash table on its join keys, then stream the probe input past
+    // it. Rows of one key are chained in build order: the HashMap holds the position of the first
+    // and next[] links each to the one after it. Joined rows come in probe order, then, for a
+    // LEFT JOIN built on the left, the left rows that met no right row.
+    void hash(ResultSet build, boolean buildLeft, ResultSet probe, Output out) {
+        Table buildTable = buildLeft ? left : right;
+        int buildColumn = buildLeft ? leftColumn : rightColumn;
+        ParallelScan.Matches rows = new ParallelScan.Matches();
+        while (build.next()) {
+            rows.add(rows.size, build.row());
+        }
+        HashMap<Object, Integer> first = new HashMap<>();
+        int[] next = new int[rows.size];
+        for (int i = rows.size - 1; i >= 0; i--) {
+            Object key = buildTable.indexKey(buildColumn, rows.rows[i].getValue(buildColumn));
+            Integer chain = first.get(key);
+            next[i] = chain == null ? -1 : chain;
+            first.put(key, i);
+        }
+        boolean[] matched = leftJoin && buildLeft ? new boolean[rows.size] : null;
+        Table probeTable = buildLeft ? right : left;
+        int probeColumn = buildLeft ? rightColumn : leftColumn;
+        while (probe.next()) {
+            Table.Row row = probe.row();
+            Integer chain = first.get(probeTable.indexKey(probeColumn, row.getValue(probeColumn)));
+            if (chain == null && leftJoin && !buildLeft && !out.add(joined(row, null))) {
+                probe.close();
+                return;
+            }
+            for (int i = chain == null ? -1 : chain; i != -1; i = next[i]) {
+                if (matched != null) {
+                    matched[i] = true;
+                }
+                if (!out.add(buildLeft ? joined(rows.rows[i], row) : joined(row, rows.rows[i]))) {
+                    probe.close();
+                    return;
+                }
+            }
+        }
+        if (matched != null) {
+            for (int i = 0; i < rows.size; i++) {
+                if (!matched[i] && !out.add(joined(rows.rows[i], null))) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // For each outer row, look up the inner rows of its key in the index on the inner table's
+    // join column, its primary key or a secondary index, and keep those meeting innerWhere.
+    // Joined rows come in outer order.
+    void indexNestedLoop(ResultSet outer, boolean outerLeft, SecondaryIndex index, RowPredicate innerWhere,
+                         Output out) {
+        Table outerTable = outerLeft ? left : right;
+        Table innerTable = outerLeft ? right : left;
+        int outerColumn = outerLeft ? leftColumn : rightColumn;
+        List<Table.Row> inner = new ArrayList<>();
+        while (outer.next()) {
+            Table.Row row = outer.row();
+            Object key = outerTable.indexKey(outerColumn, row.getValue(outerColumn));
+            inner.clear();
+            if (index == null) {
+                int id = innerTable.findByIndexKey(key);
+                Table.Row match = id == -1 ? null : innerTable.rows.get(id);
+                if (match != null && innerWhere.test(match)) {
+                    inner.add(match);
+                }
+            } else {
+                index.forEach(key, id -> {
+                    Table.Row match = innerTable.rows.get(id);
+                    if (innerWhere.test(match)) {
+                        inner.add(match);
+                    }
+                });
+            }
+            if (inner.isEmpty() && leftJoin && !out.add(joined(row, null))) {
+                outer.close();
+                return;
+            }
+            for (Table.Row match : inner) {
+                if (!out.add(outerLeft ? joined(row, match) : joined(match, row))) {
+                    outer.close();
+                    return;
+                }
+            }
+        }
+    }
+
+    private Table.Row joined(Table.Row leftRow, Table.Row rightRow) {
+        return new JoinedRow(leftRow, rightRow, left.getColumnNames().size(), right.getColumnNames().size());
+    }
+
+    // Values of a left row followed by those of a right row, or nulls in their place
+    private static final class JoinedRow extends Table.Row {
+        private final Table.Row left;
+        private final Table.Row right; // null for a LEFT JOIN's unmatched left row
+        private final int leftColumns;
+        private final int rightColumns;
+
+        JoinedRow(Table.Row left, Table.Row right, int leftColumns, int rightColumns) {
+            super(null);
+            this.left = left;
+            this.right = right;
+            this.leftColumns = leftColumns;
+            this.rightColumns = rightColumns;
+        }
+
+        @Override
+        public ArrayList<Object> getValues() {
+            ArrayList<Object> values = new ArrayList<>(leftColumns + rightColumns);
+            values.addAll(left.getValues());
+            if (right != null) {
+                values.addAll(right.getValues());
+            } else {
+                values.addAll(Collections.nCopies(rightColumns, null));
+            }
+            return values;
+        }
+
+        @Override
+        public Object getValue(int index) {
+            if (index < leftColumns) {
+                return left.getValue(index);
+            }
+            return right == null ? null : right.getValue(index - leftColumns);
+        }
+
+        @Override
+        public void setValue(int index, Object value) {
+            throw new UnsupportedOperationException("Joined rows are read-only");
+        }
+
+        @Override
+        public String toString() {
+            return getValues().toString();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package edu.smu.smusql;
+
+// Splits a statement into tokens in a single pass over its characters, one token ahead of the
+// parser, without regular expressions. The current token is only its kind and its offsets in the
+// text: keywords are matched in place and the token's text is cut out only when the parser keeps
+// it, as a name or a value.
+final class Lexer {
+    static final int WORD = 0; // Name, keyword, number or unquoted value: a run of other characters
+    static final int STRING = 1; // Quoted literal 'like this', '' standing for a quote inside
+    static final int OPERATOR = 2; // =, <, >, <=, >=
+    static final int LEFT_PARENTHESIS = 3;
+    static final int RIGHT_PARENTHESIS = 4;
+    static final int COMMA = 5;
+    static final int SEMICOLON = 6;
+    static final int END = 7;
+    static final int PARAMETER = 8; // ? placeholder of a prepared statement
+
+    private final String text;
+    private int position; // Where the next token starts looking
+    private int kind;
+    private int start; // Current token is text[start, end)
+    private int end;
+
+    Lexer(String text) {
+        this.text = text;
+        advance();
+    }
+
+    int kind() {
+        return kind;
+    }
+
+    // Move to the next token. Throws IllegalArgumentException on a string literal left open.
+    void advance() {
+        int length = text.length();
+        while (position < length && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+        start = position;
+        if (position == length) {
+            kind = END;
+            end = position;
+            return;
+        }
+        char c = text.charAt(position++);
+        switch (c) {
+            case '(':
+                kind = LEFT_PARENTHESIS;
+                break;
+            case ')':
+                kind = RIGHT_PARENTHESIS;
+                break;
+            case ',':
+                kind = COMMA;
+                break;
+            case ';':
+                kind = SEMICOLON;
+                break;
+            case '?':
+                kind = PARAMETER;
+                break;
+            case '=':
+                kind = OPERATOR;
+                break;
+            case '<':
+            case '>':
+                kind = OPERATOR;
+                if (position < length && text.charAt(position) == '=') {
+                    position++;
+                }
+                break;
+            case '\'':
+                kind = STRING;
+                while (true) {
+                    if (position == length) {
+                        throw new IllegalArgumentException("Unterminated string literal");
+                    }
+                    if (text.charAt(position++) == '\'') {
+                        if (position < length && text.charAt(position) == '\'') {
+                            position++; // Escaped quote
+                        } else {
+                            break;
+                        }
+                    }
+                }
+                break;
+            default:
+                kind = WORD;
+                while (position < length && isWordCharacter(text.charAt(position))) {
+                    position++;
+                }
+        }
+        end = position;
+    }
+
+    private static boolean isWordCharacter(char c) {
+        switch (c) {
+            case '(':
+            case ')':
+            case ',':
+            case ';':
+            case '?':
+            case '=':
+            case '<':
+            case '>':
+            case '\'':
+                return false;
+            default:
+                return !Character.isWhitespace(c);
+        }
+    }
+
+    // Whether the current token is the word keyword, in any case
+    boolean isKeyword(String keyword) {
+        return kind == WORD && end - start == keyword.length()
+                && text.regionMatches(true, start, keyword, 0, keyword.length());
+    }
+
+    // The current operator as a constant string, so the parser can compare it with equals
+    String operator() {
+        if (end - start == 1) {
+            switch (text.charAt(start)) {
+                case '=': return "=";
+                case '<': return "<";
+                default: return ">";
+            }
+        }
+        return text.charAt(start) == '<' ? "<=" : ">=";
+    }
+
+    // Text of the current token, quotes and all for a string literal
+    String text() {
+        return text.substring(start, end);
+    }
+
+    // Text from offset from up to the end of the current token, e.g. for error messages
+    String textFrom(int from) {
+        return text.substring(from, end);
+    }
+
+    // Append the text of the current token
+    void appendTo(StringBuilder builder) {
+        builder.append(text, start, end);
+    }
+
+    int start() {
+        return start;
+    }
+}
@@ -0,0 +1,235 @@
+package edu.smu.smusql;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+// Keeps row data outside the Java heap in direct ByteBuffers.
+// Every row owns a fixed-width slot of COLUMN_WIDTH bytes per column. Columns declared INT, BIGINT
+// or DOUBLE keep the value itself in those bytes. Every other column entry holds the value's code
+// in the column's StringDictionary or, for values left without one, the offset and length of its
+// UTF-8 bytes in a separate, append-only string area.
+// The heap only keeps the row map and one small OffHeapRow handle (a slot number) per row.
+// Reads use absolute buffer accessors, so concurrent readers are safe while no one writes.
+class OffHeapRowStore {
+    private static final int COLUMN_WIDTH = 8; // int offset + int length
+    private static final int NULL_LENGTH = -1;
+    private static final int CODE_LENGTH = -2; // length of an entry holding a dictionary code
+    private static final int INITIAL_SLOTS = 1024;
+    private static final int INITIAL_STRING_BYTES = 1 << 16;
+    private static final int MIN_COMPACT_BYTES = 1 << 20;
+
+    private final int columnCount;
+    private final ColumnType[] numericTypes; // declared numeric type of each column, null for text columns
+    private final StringDictionary[] dictionaries; // of each text column
+    private final int slotWidth;
+    private ByteBuffer slots;
+    private int slotCount; // slots handed out so far; freed ones are reused first
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private final BitSet liveSlots = new BitSet();
+
+    private ByteBuffer strings;
+    private int stringsEnd;
+    private int garbageBytes; // bytes in the string area no longer referenced by any slot
+
+    OffHeapRowStore(List<ColumnType> columnTypes, StringDictionary[] dictionaries) {
+        this.columnCount = columnTypes.size();
+        this.dictionaries = dictionaries;
+        this.numericTypes = new ColumnType[columnCount];
+        for (int column = 0; column < columnCount; column++) {
+            ColumnType type = columnTypes.get(column);
+            numericTypes[column] = type == ColumnType.VARCHAR ? null : type;
+        }
+        this.slotWidth = columnCount * COLUMN_WIDTH;
+        this.slots = ByteBuffer.allocateDirect(Math.max(slotWidth, 1) * INITIAL_SLOTS);
+        this.strings = ByteBuffer.allocateDirect(INITIAL_STRING_BYTES);
+    }
+
+    // Store a new row and return its on-heap handle
+    Table.Row insert(List<Object> values) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            slot = slotCount++;
+            ensureSlotCapacity(slotCount);
+        }
+        liveSlots.set(slot);
+        for (int column = 0; column < columnCount; column++) {
+            if (numericTypes[column] == null) {
+                slots.putInt(columnBase(slot, column) + 4, NULL_LENGTH); // Drop a freed row's entries before any compaction
+            }
+        }
+        for (int column = 0; column < columnCount; column++) {
+            storeValue(slot, column, values.get(column));
+        }
+        return new OffHeapRow(this, slot);
+    }
+
+    // Release the slot of a deleted row for reuse
+    void free(Table.Row row) {
+        int slot = ((OffHeapRow) row).slot;
+        for (int column = 0; column < columnCount; column++) {
+            if (numericTypes[column] == null) {
+                garbageBytes += Math.max(slots.getInt(columnBase(slot, column) + 4), 0);
+            }
+        }
+        liveSlots.clear(slot);
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    private int columnBase(int slot, int column) {
+        return slot * slotWidth + column * COLUMN_WIDTH;
+    }
+
+    Object readValue(int slot, int column) {
+        int base = columnBase(slot, column);
+        if (numericTypes[column] != null) {
+            long bits = slots.getLong(base);
+            switch (numericTypes[column]) {
+                case INT: return (int) bits;
+                case BIGINT: return bits;
+                default: return Double.longBitsToDouble(bits);
+            }
+        }
+        int length = slots.getInt(base + 4);
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length == CODE_LENGTH) {
+            return dictionaries[column].decode(slots.getInt(base));
+        }
+        byte[] bytes = new byte[length];
+        strings.get(slots.getInt(base), bytes, 0, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Overwrite one value of a live row; the previous value's bytes become garbage
+    void writeValue(int slot, int column, Object value) {
+        int base = columnBase(slot, column);
+        if (numericTypes[column] != null) {
+            storeValue(slot, column, value);
+            return;
+        }
+        garbageBytes += Math.max(slots.getInt(base + 4), 0);
+        slots.putInt(base + 4, NULL_LENGTH); // So a compaction triggered by the write does not keep the old bytes
+        storeValue(slot, column, value);
+    }
+
+    private void storeValue(int slot, int column, Object value) {
+        int base = columnBase(slot, column);
+        if (numericTypes[column] != null) {
+            // Typed values arrive already converted by Table
+            Number number = (Number) value;
+            slots.putLong(base, numericTypes[column] == ColumnType.DOUBLE
+                    ? Double.doubleToRawLongBits(number.doubleValue()) : number.longValue());
+            return;
+        }
+        if (value == null) {
+            slots.putInt(base, 0);
+            slots.putInt(base + 4, NULL_LENGTH);
+            return;
+        }
+        int code = dictionaries[column].encode(value.toString());
+        if (code >= 0) {
+            slots.putInt(base, code);
+            slots.putInt(base + 4, CODE_LENGTH);
+            return;
+        }
+        byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+        ensureStringCapacity(bytes.length);
+        strings.put(stringsEnd, bytes, 0, bytes.length);
+        slots.putInt(base, stringsEnd);
+        slots.putInt(base + 4, bytes.length);
+        stringsEnd += bytes.length;
+    }
+
+    private void ensureSlotCapacity(int slotsNeeded) {
+        if ((long) slotsNeeded * slotWidth <= slots.capacity()) {
+            return;
+        }
+        ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(slots.capacity() * 2, slotsNeeded * slotWidth));
+        grown.put(0, slots, 0, slots.capacity());
+        slots = grown;
+    }
+
+    // Make room for extra bytes at the end of the string area, compacting first when at least
+    // half of it is garbage left behind by updates and deletes
+    private void ensureStringCapacity(int extra) {
+        if (stringsEnd + extra <= strings.capacity()) {
+            return;
+        }
+        if (garbageBytes >= MIN_COMPACT_BYTES && garbageBytes >= stringsEnd / 2) {
+            compactStrings(Math.max(strings.capacity(), (stringsEnd - garbageBytes + extra) * 2));
+            if (stringsEnd + extra <= strings.capacity()) {
+                return;
+            }
+        }
+        ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(strings.capacity() * 2, stringsEnd + extra));
+        grown.put(0, strings, 0, stringsEnd);
+        strings = grown;
+    }
+
+    // Copy only the live values into a fresh string area
+    private void compactStrings(int capacity) {
+        ByteBuffer compacted = ByteBuffer.allocateDirect(capacity);
+        int end = 0;
+        for (int slot = liveSlots.nextSetBit(0); slot >= 0; slot = liveSlots.nextSetBit(slot + 1)) {
+            for (int column = 0; column < columnCount; column++) {
+                int base = columnBase(slot, column);
+                int length = numericTypes[column] == null ? slots.getInt(base + 4) : 0;
+                if (length > 0) {
+                    compacted.put(end, strings, slots.getInt(base), length);
+                    slots.putInt(base, end);
+                    end += length;
+                }
+            }
+        }
+        strings = compacted;
+        stringsEnd = end;
+        garbageBytes = 0;
+    }
+
+    // Row handle whose values are decoded from the store on every access
+    static final class OffHeapRow extends Table.Row {
+        private final OffHeapRowStore store;
+        final int slot;
+
+        OffHeapRow(OffHeapRowStore store, int slot) {
+            super(null);
+            this.store = store;
+            this.slot = slot;
+        }
+
+        @Override
+        public ArrayList<Object> getValues() {
+            ArrayList<Object> result = new ArrayList<>(store.columnCount);
+            for (int column = 0; column < store.columnCount; column++) {
+                result.add(store.readValue(slot, column));
+            }
+            return result;
+        }
+
+        @Override
+        public Object getValue(int index) {
+            return store.readValue(slot, index);
+        }
+
+        @Override
+        public void setValue(int index, Object value) {
+            store.writeValue(slot, index, value);
+        }
+
+        @Override
+        public String toString() {
+            return getValues().toString();
+        }
+    }
+}
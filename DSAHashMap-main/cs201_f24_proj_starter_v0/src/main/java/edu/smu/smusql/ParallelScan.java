@@ -0,0 +1,93 @@
+package edu.smu.smusql;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveTask;
+
+// Filters the rows of a RowMap on the common ForkJoinPool.
+// The map's spliterator is split in halves until each task covers about LEAF_ROWS rows; every task
+// filters its own part in batches (see RowBatch), collects the matches and the halves are joined
+// left to right, so the result lists rows in the same order as a sequential forEach would.
+class ParallelScan extends RecursiveTask<ParallelScan.Matches> {
+    private static final long serialVersionUID = 1L;
+    static final int LEAF_ROWS = 1 << 13;
+
+    private final RowMap.RowSpliterator part;
+    private final RowPredicate filter;
+
+    private ParallelScan(RowMap.RowSpliterator part, RowPredicate filter) {
+        this.part = part;
+        this.filter = filter;
+    }
+
+    // Keys and rows of every row accepted by filter, in forEach order.
+    // The filter runs concurrently, so it must not modify the map.
+    static Matches filter(RowMap rows, RowPredicate filter) {
+        return new ParallelScan(rows.spliterator(), filter).invoke();
+    }
+
+    @Override
+    protected Matches compute() {
+        RowMap.RowSpliterator prefix = part.estimateSize() > LEAF_ROWS ? part.trySplit() : null;
+        if (prefix == null) {
+            Matches matches = new Matches();
+            RowBatch batch = new RowBatch(filter, matches::add);
+            part.forEachRemaining(batch);
+            batch.flush();
+            return matches;
+        }
+        ParallelScan left = new ParallelScan(prefix, filter);
+        left.fork();
+        Matches right = compute();
+        return left.join().append(right);
+    }
+
+    // Growable parallel arrays of matching keys and rows
+    static final class Matches {
+        int[] keys;
+        Table.Row[] rows;
+        int size;
+
+        Matches() {
+            this(16);
+        }
+
+        Matches(int capacity) {
+            keys = new int[Math.max(capacity, 1)];
+            rows = new Table.Row[keys.length];
+        }
+
+        void add(int key, Table.Row row) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            keys[size] = key;
+            rows[size] = row;
+            size++;
+        }
+
+        // Add the selected rows of a batch
+        void add(RowBatch batch) {
+            for (int i = 0; i < batch.selected; i++) {
+                int position = batch.selection[i];
+                add(batch.keys[position], batch.rows[position]);
+            }
+        }
+
+        // Append other's matches after this one's
+        Matches append(Matches other) {
+            if (other.size == 0) {
+                return this;
+            }
+            if (size + other.size > keys.length) {
+                int capacity = Math.max(keys.length * 2, size + other.size);
+                keys = Arrays.copyOf(keys, capacity);
+                rows = Arrays.copyOf(rows, capacity);
+            }
+            System.arraycopy(other.keys, 0, keys, size, other.size);
+            System.arraycopy(other.rows, 0, rows, size, other.size);
+            size += other.size;
+            return this;
+        }
+    }
+}
@@ -1,85 +1,435 @@
 package edu.smu.smusql;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
-/*
- * This is a rudimentary parser you may want to use to parse smuSQL statements.
- * Use of this parser is optional.
- * You may decide to use your own parser.
- * Example usage of some code in this parser can be found in the sample implementation.
- * However, the sample implementation does not have a 'Parser' class.
- */
+// Recursive-descent parser from smuSQL text to a Statement, reading one token ahead from a Lexer.
+// Keywords may be in any case and a statement may end in a semicolon. Throws
+// IllegalArgumentException, with the message Engine reports after "ERROR: ", on invalid syntax.
+//
+//   statement := SELECT select FROM table [join] [where] [GROUP BY column {, column}] [LIMIT count]
+//              | INSERT INTO table VALUES ( value {, value} )
+//              | UPDATE table SET column = value [where]
+//              | DELETE FROM table [where]
+//              | CREATE TABLE table ( column [type [( length )]] [PRIMARY KEY] {, ...} ) [STORAGE mode]
+//              | CREATE INDEX index ON table ( column ) [USING type]
+//              | ANALYZE [table] | SET STATS table ON|OFF | SHOW STATS table
+//   select    := * | item {, item}
+//   item      := column | function ( column ) | COUNT ( * )
+//   function  := COUNT | SUM | AVG | MIN | MAX
+//   join      := [INNER | LEFT [OUTER]] JOIN table ON column = column
+//   where     := WHERE or
+//   or        := and {OR and}
+//   and       := primary {AND primary}
+//   primary   := ( or ) | column operator value
+//   operator  := = | < | > | <= | >= | LIKE
+//   value     := number | word | 'string' | ?
 public class Parser {
-    /*
-    public void parseInsert(String[] tokens) {
-        String tableName = tokens[2]; // The name of the table to be inserted into.
-        String valueList = queryBetweenParentheses(tokens, 4); // Get values list between parentheses
-        List<String> values = Arrays.asList(valueList.split(",")); // These are the values in the row to be inserted.
-    }
-
-    public void parseDelete(String[] tokens) {
-        String tableName = tokens[2]; // The name of the table to be deleted from.
-
-        List<String[]> whereClauseConditions = new ArrayList<>(); // Array for storing conditions from the where clause.
-
-        // Parse WHERE clause conditions
-        if (tokens.length > 3 && tokens[3].toUpperCase().equals("WHERE")) {
-            for (int i = 4; i < tokens.length; i++) {
-                if (tokens[i].toUpperCase().equals("AND") || tokens[i].toUpperCase().equals("OR")) {
-                    // Add AND/OR conditions
-                    whereClauseConditions.add(new String[] {tokens[i].toUpperCase(), null, null, null});
-                } else if (isOperator(tokens[i])) {
-                    // Add condition with operator (column, operator, value)
-                    String column = tokens[i - 1];
-                    String operator = tokens[i];
-                    String value = tokens[i + 1];
-                    whereClauseConditions.add(new String[] {null, column, operator, value});
-                    i += 1; // Skip the value since it has been processed
+    // Most OR-groups a WHERE clause may have once its parentheses are multiplied out
+    private static final int MAX_OR_GROUPS = 256;
+
+    private final Lexer lexer;
+    private String command = "SQL"; // Statement being parsed, named in syntax errors
+    private int parameters; // ? placeholders so far
+
+    private Parser(String sql) {
+        lexer = new Lexer(sql);
+    }
+
+    public static Statement parse(String sql) {
+        return new Parser(sql).statement();
+    }
+
+    // The statement with its tokens separated by single spaces and without a final semicolon, so
+    // statements differing only in spacing compare equal. Throws IllegalArgumentException on a
+    // string literal left open.
+    public static String normalize(String sql) {
+        Lexer lexer = new Lexer(sql);
+        StringBuilder normalized = new StringBuilder(sql.length());
+        while (lexer.kind() != Lexer.END) {
+            int kind = lexer.kind();
+            int start = normalized.length();
+            if (start > 0) {
+                normalized.append(' ');
+            }
+            lexer.appendTo(normalized);
+            lexer.advance();
+            if (kind == Lexer.SEMICOLON && lexer.kind() == Lexer.END) {
+                normalized.setLength(start);
+            }
+        }
+        return normalized.toString();
+    }
+
+    private Statement statement() {
+        Statement statement;
+        if (accept("SELECT")) {
+            statement = select();
+        } else if (accept("INSERT")) {
+            statement = insert();
+        } else if (accept("UPDATE")) {
+            statement = update();
+        } else if (accept("DELETE")) {
+            statement = delete();
+        } else if (accept("CREATE")) {
+            statement = accept("INDEX") ? createIndex() : createTable();
+        } else if (accept("ANALYZE")) {
+            statement = analyze();
+        } else if (accept("SET")) {
+            statement = setStats();
+        } else if (accept("SHOW")) {
+            statement = showStats();
+        } else {
+            throw new IllegalArgumentException("Unknown command");
+        }
+        accept(Lexer.SEMICOLON);
+        if (lexer.kind() != Lexer.END) {
+            throw syntaxError();
+        }
+        statement.parameters = parameters;
+        return statement;
+    }
+
+    private Statement.Select select() {
+        command = "SELECT";
+        Statement.Select select = new Statement.Select();
+        if (!accept("*")) {
+            select.items = new ArrayList<>();
+            do {
+                select.items.add(item());
+            } while (accept(Lexer.COMMA));
+        }
+        expect("FROM");
+        select.tableName = name();
+        select.leftJoin = accept("LEFT");
+        if (select.leftJoin) {
+            accept("OUTER");
+        }
+        if (select.leftJoin || accept("INNER") || lexer.isKeyword("JOIN")) {
+            expect("JOIN");
+            select.joinTable = name();
+            expect("ON");
+            String column = name();
+            if (lexer.kind() != Lexer.OPERATOR || !lexer.operator().equals("=")) {
+                throw syntaxError();
+            }
+            lexer.advance();
+            select.joinOn = new String[]{column, name()};
+        }
+        select.where = where();
+        select.groupBy = new ArrayList<>();
+        if (accept("GROUP")) {
+            expect("BY");
+            do {
+                select.groupBy.add(name());
+            } while (accept(Lexer.COMMA));
+        }
+        if (accept("LIMIT")) {
+            String count = name();
+            try {
+                select.limit = Integer.parseInt(count);
+            } catch (NumberFormatException e) {
+                select.limit = -1;
+            }
+            if (select.limit < 0) {
+                throw new IllegalArgumentException("Invalid LIMIT: " + count);
+            }
+        }
+        return select;
+    }
+
+    // Column or aggregate of a select list, as {function, column} (see Statement.Select)
+    private String[] item() {
+        String name = name();
+        if (!accept(Lexer.LEFT_PARENTHESIS)) {
+            if (name.equals("*")) {
+                throw syntaxError();
+            }
+            return new String[]{null, name};
+        }
+        String function = name.toUpperCase();
+        if (!HashAggregate.isFunction(function)) {
+            throw new IllegalArgumentException("Unknown function: " + name);
+        }
+        String column = name();
+        if (column.equals("*") && !function.equals("COUNT")) {
+            throw syntaxError();
+        }
+        expect(Lexer.RIGHT_PARENTHESIS);
+        return new String[]{function, column};
+    }
+
+    private Statement.Insert insert() {
+        command = "INSERT INTO";
+        Statement.Insert insert = new Statement.Insert();
+        expect("INTO");
+        insert.tableName = name();
+        expect("VALUES");
+        expect(Lexer.LEFT_PARENTHESIS);
+        insert.values = new ArrayList<>();
+        do {
+            insert.values.add(value());
+        } while (accept(Lexer.COMMA));
+        expect(Lexer.RIGHT_PARENTHESIS);
+        return insert;
+    }
+
+    private Statement.Update update() {
+        command = "UPDATE";
+        Statement.Update update = new Statement.Update();
+        update.tableName = name();
+        expect("SET");
+        update.column = name();
+        if (lexer.kind() != Lexer.OPERATOR || !lexer.operator().equals("=")) {
+            throw syntaxError();
+        }
+        lexer.advance();
+        update.value = value();
+        update.where = where();
+        return update;
+    }
+
+    private Statement.Delete delete() {
+        command = "DELETE";
+        Statement.Delete delete = new Statement.Delete();
+        expect("FROM");
+        delete.tableName = name();
+        delete.where = where();
+        return delete;
+    }
+
+    private Statement.CreateTable createTable() {
+        command = "CREATE TABLE";
+        Statement.CreateTable create = new Statement.CreateTable();
+        expect("TABLE");
+        create.tableName = name();
+        create.columns = new ArrayList<>();
+        create.columnTypes = new ArrayList<>();
+        expect(Lexer.LEFT_PARENTHESIS);
+        do {
+            int definitionStart = lexer.start();
+            String column = name();
+            ColumnType type = null;
+            if (lexer.kind() == Lexer.WORD && !lexer.isKeyword("PRIMARY")) {
+                String typeName = name();
+                type = ColumnType.parse(typeName);
+                if (type == null) {
+                    throw new IllegalArgumentException("Unknown column type: " + typeName);
                 }
+                if (accept(Lexer.LEFT_PARENTHESIS)) {
+                    name(); // A VARCHAR(20) length is accepted but not enforced
+                    expect(Lexer.RIGHT_PARENTHESIS);
+                }
+            }
+            if (accept("PRIMARY")) {
+                expect("KEY");
+                if (create.primaryKey != null) {
+                    throw new IllegalArgumentException("Multiple primary keys for table " + create.tableName);
+                }
+                create.primaryKey = column;
+            }
+            if (lexer.kind() != Lexer.COMMA && lexer.kind() != Lexer.RIGHT_PARENTHESIS) {
+                throw new IllegalArgumentException("Invalid column definition: " + lexer.textFrom(definitionStart));
+            }
+            create.columns.add(column);
+            create.columnTypes.add(type);
+        } while (accept(Lexer.COMMA));
+        expect(Lexer.RIGHT_PARENTHESIS);
+        create.storage = Table.Storage.HEAP;
+        if (accept("STORAGE")) {
+            String mode = name();
+            try {
+                create.storage = Table.Storage.valueOf(mode.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown storage mode: " + mode);
             }
         }
+        return create;
     }
 
-    public void parseUpdate(String[] tokens){
-        String tableName = tokens[1]; // name of the table to be updated
+    private Statement.CreateIndex createIndex() {
+        command = "CREATE INDEX";
+        Statement.CreateIndex create = new Statement.CreateIndex();
+        create.indexName = name();
+        expect("ON");
+        create.tableName = name();
+        expect(Lexer.LEFT_PARENTHESIS);
+        create.column = name();
+        if (lexer.kind() == Lexer.COMMA) {
+            throw new IllegalArgumentException("Only single-column indexes are supported");
+        }
+        expect(Lexer.RIGHT_PARENTHESIS);
+        create.type = SecondaryIndex.Type.HASH;
+        if (accept("USING")) {
+            String type = name();
+            try {
+                create.type = SecondaryIndex.Type.valueOf(type.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown index type: " + type);
+            }
+        }
+        return create;
+    }
 
-        String setColumn = tokens[3]; // column to be updated
-        String newValue = tokens[5]; // new value for above column
+    private Statement.Analyze analyze() {
+        command = "ANALYZE";
+        Statement.Analyze analyze = new Statement.Analyze();
+        if (lexer.kind() == Lexer.WORD) {
+            analyze.tableName = name();
+        }
+        return analyze;
+    }
 
-        // Initialize whereClauseConditions list
-        List<String[]> whereClauseConditions = new ArrayList<>();
+    private Statement.SetStats setStats() {
+        command = "SET STATS";
+        Statement.SetStats set = new Statement.SetStats();
+        expect("STATS");
+        set.tableName = name();
+        if (accept("ON")) {
+            set.enable = true;
+        } else if (!accept("OFF")) {
+            throw syntaxError();
+        }
+        return set;
+    }
 
-        // Parse WHERE clause conditions
-        if (tokens.length > 6 && tokens[6].equalsIgnoreCase("WHERE")) {
-            for (int i = 5; i < tokens.length; i++) {
-                if (tokens[i].equalsIgnoreCase("AND") || tokens[i].equalsIgnoreCase("OR")) {
-                    // Add AND/OR conditions
-                    whereClauseConditions.add(new String[] {tokens[i].toUpperCase(), null, null, null});
-                } else if (isOperator(tokens[i])) {
-                    // Add condition with operator (column, operator, value)
-                    String column = tokens[i - 1];
-                    String operator = tokens[i];
-                    String value = tokens[i + 1];
-                    whereClauseConditions.add(new String[] {null, column, operator, value});
-                    i += 1; // Skip the value since it has been processed
+    private Statement.ShowStats showStats() {
+        command = "SHOW STATS";
+        Statement.ShowStats show = new Statement.ShowStats();
+        expect("STATS");
+        show.tableName = name();
+        return show;
+    }
+
+    // Conditions of an optional WHERE clause, as OR-groups of ANDed conditions (see Statement)
+    private List<String[]> where() {
+        List<String[]> conditions = new ArrayList<>();
+        if (!accept("WHERE")) {
+            return conditions;
+        }
+        List<List<String[]>> groups = or();
+        for (int g = 0; g < groups.size(); g++) {
+            List<String[]> group = groups.get(g);
+            for (int i = 0; i < group.size(); i++) {
+                String[] condition = group.get(i);
+                // A fresh array per position: a condition multiplied into several groups is shared
+                conditions.add(new String[]{condition[0], condition[1], condition[2], g > 0 && i == 0 ? "OR" : "AND"});
+            }
+        }
+        return conditions;
+    }
+
+    // The groups of either side
+    private List<List<String[]>> or() {
+        List<List<String[]>> groups = and();
+        while (accept("OR")) {
+            groups.addAll(and());
+            checkGroups(groups);
+        }
+        return groups;
+    }
+
+    // Each group of one side joined with each group of the other
+    private List<List<String[]>> and() {
+        List<List<String[]>> groups = primary();
+        while (accept("AND")) {
+            List<List<String[]>> right = primary();
+            List<List<String[]>> product = new ArrayList<>(groups.size() * right.size());
+            for (List<String[]> left : groups) {
+                for (List<String[]> group : right) {
+                    List<String[]> joined = new ArrayList<>(left.size() + group.size());
+                    joined.addAll(left);
+                    joined.addAll(group);
+                    product.add(joined);
                 }
             }
+            groups = product;
+            checkGroups(groups);
+        }
+        return groups;
+    }
+
+    private List<List<String[]>> primary() {
+        if (accept(Lexer.LEFT_PARENTHESIS)) {
+            List<List<String[]>> groups = or();
+            expect(Lexer.RIGHT_PARENTHESIS);
+            return groups;
         }
+        String column = name();
+        String operator;
+        if (lexer.kind() == Lexer.OPERATOR) {
+            operator = lexer.operator();
+            lexer.advance();
+        } else if (accept("LIKE")) {
+            operator = "LIKE";
+        } else {
+            throw syntaxError();
+        }
+        List<String[]> group = new ArrayList<>();
+        group.add(new String[]{column, operator, value()});
+        List<List<String[]>> groups = new ArrayList<>();
+        groups.add(group);
+        return groups;
+    }
+
+    private void checkGroups(List<List<String[]>> groups) {
+        if (groups.size() > MAX_OR_GROUPS) {
+            throw new IllegalArgumentException("WHERE clause too complex");
+        }
+    }
+
+    // Table, column, index or type name
+    private String name() {
+        if (lexer.kind() != Lexer.WORD) {
+            throw syntaxError();
+        }
+        String name = lexer.text();
+        lexer.advance();
+        return name;
+    }
+
+    // Value as written: a number, a word or a quoted string with its quotes; or a placeholder
+    private String value() {
+        if (accept(Lexer.PARAMETER)) {
+            return Statement.parameter(parameters++);
+        }
+        if (lexer.kind() != Lexer.WORD && lexer.kind() != Lexer.STRING) {
+            throw syntaxError();
+        }
+        String value = lexer.text();
+        lexer.advance();
+        return value;
     }
-    */
-    // Helper method to extract content inside parentheses
-    private String queryBetweenParentheses(String[] tokens, int startIndex) {
-        StringBuilder result = new StringBuilder();
-        for (int i = startIndex; i < tokens.length; i++) {
-            result.append(tokens[i]).append(" ");
+
+    private boolean accept(String keyword) {
+        if (lexer.isKeyword(keyword)) {
+            lexer.advance();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean accept(int kind) {
+        if (lexer.kind() == kind) {
+            lexer.advance();
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String keyword) {
+        if (!accept(keyword)) {
+            throw syntaxError();
+        }
+    }
+
+    private void expect(int kind) {
+        if (!accept(kind)) {
+            throw syntaxError();
         }
-        return result.toString().trim().replaceAll("\\(", "").replaceAll("\\)", "");
     }
 
-    // Helper method to determine if a string is an operator
-    private boolean isOperator(String token) {
-        return token.equals("=") || token.equals(">") || token.equals("<") || token.equals(">=") || token.equals("<=");
+    private IllegalArgumentException syntaxError() {
+        return new IllegalArgumentException("Invalid " + command + " syntax");
     }
-}
\ No newline at end of file
+}
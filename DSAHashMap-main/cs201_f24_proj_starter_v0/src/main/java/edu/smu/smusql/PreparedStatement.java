@@ -0,0 +1,69 @@
+package edu.smu.smusql;
+
+// A statement parsed once by Engine.prepare and run any number of times with values bound to its
+// ? placeholders, e.g. prepare("UPDATE users SET age = ? WHERE id = ?").execute(31, 7).
+// Numbers are bound as they print and anything else as a quoted string, the way each would be
+// written in the query. The table is looked up again only after a table is created or indexed;
+// the access path is still chosen on each run, since its cost depends on the values.
+public class PreparedStatement {
+    private final Engine engine;
+    final Statement statement;
+    private Table table; // The statement's table as of schemaVersion, null if there is none
+    private int schemaVersion = -1;
+
+    PreparedStatement(Engine engine, Statement statement) {
+        this.engine = engine;
+        this.statement = statement;
+    }
+
+    public int parameterCount() {
+        return statement.parameters;
+    }
+
+    // Run the statement with the values bound to its placeholders, in order; result as from
+    // Engine.executeSQL
+    public String execute(Object... values) {
+        Statement bound;
+        try {
+            bound = bind(values);
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        return engine.execute(bound, table());
+    }
+
+    // Run a SELECT with the values bound to its placeholders; rows as from Engine.query, which
+    // also says what it throws
+    public ResultSet executeQuery(Object... values) {
+        if (!(statement instanceof Statement.Select)) {
+            throw new IllegalArgumentException("ERROR: Only a SELECT returns rows");
+        }
+        return engine.query((Statement.Select) bind(values), table());
+    }
+
+    // Throws IllegalArgumentException, with the error message for the caller, if a value is missing
+    private Statement bind(Object[] values) {
+        if (values.length != statement.parameters) {
+            throw new IllegalArgumentException("ERROR: Expected " + statement.parameters
+                    + " parameters, got " + values.length);
+        }
+        String[] text = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                throw new IllegalArgumentException("ERROR: No value for parameter " + (i + 1));
+            }
+            text[i] = values[i] instanceof Number
+                    ? values[i].toString()
+                    : "'" + values[i].toString().replace("'", "''") + "'";
+        }
+        return statement.bind(text);
+    }
+
+    private Table table() {
+        if (schemaVersion != engine.schemaVersion() && statement.tableName != null) {
+            table = engine.getTable(statement.tableName);
+            schemaVersion = engine.schemaVersion();
+        }
+        return table;
+    }
+}
@@ -0,0 +1,205 @@
+package edu.smu.smusql;
+
+import java.util.function.IntConsumer;
+
+// Secondary index answering range conditions as well as "=": a skip list of the column's distinct
+// index keys in ascending order, each with the ids of the rows holding it.
+// Numeric keys (Double) sort before text keys (String); each group is ordered the way WHERE
+// compares it, numbers by Double.compare and text by String.compareTo.
+public class RangeIndex extends SecondaryIndex {
+    private static final int MAX_LEVEL = 24; // 4^24 keys before the top level thins out
+
+    private final Node head = new Node(null, MAX_LEVEL);
+    private int level = 1; // Levels in use
+    private int size; // Distinct keys
+    private long seed = 0x9E3779B97F4A7C15L; // xorshift state for node levels
+
+    private static final class Node {
+        final Object key;
+        final RowIdSet ids = new RowIdSet();
+        final Node[] next;
+
+        Node(Object key, int level) {
+            this.key = key;
+            this.next = new Node[level];
+        }
+    }
+
+    public RangeIndex(String indexName, int columnIndex) {
+        super(indexName, columnIndex);
+    }
+
+    static int compareKeys(Object a, Object b) {
+        if (a instanceof Double) {
+            return b instanceof Double ? Double.compare((Double) a, (Double) b) : -1;
+        }
+        return b instanceof Double ? 1 : ((String) a).compareTo((String) b);
+    }
+
+    // Level of a new node: each level above the first with probability 1/4
+    private int randomLevel() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        return Math.min(1 + Long.numberOfTrailingZeros(seed) / 2, MAX_LEVEL);
+    }
+
+    // Fill update with the last node before key on each level; returns the node after it on level 0
+    private Node findPredecessors(Object key, Node[] update) {
+        Node node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && compareKeys(node.next[i].key, key) < 0) {
+                node = node.next[i];
+            }
+            update[i] = node;
+        }
+        return node.next[0];
+    }
+
+    void add(Object key, int rowId) {
+        Node[] update = new Node[MAX_LEVEL];
+        Node node = findPredecessors(key, update);
+        if (node == null || compareKeys(node.key, key) != 0) {
+            int nodeLevel = randomLevel();
+            for (int i = level; i < nodeLevel; i++) {
+                update[i] = head;
+            }
+            level = Math.max(level, nodeLevel);
+            node = new Node(key, nodeLevel);
+            for (int i = 0; i < nodeLevel; i++) {
+                node.next[i] = update[i].next[i];
+                update[i].next[i] = node;
+            }
+            size++;
+        }
+        node.ids.add(rowId);
+    }
+
+    void remove(Object key, int rowId) {
+        Node[] update = new Node[MAX_LEVEL];
+        Node node = findPredecessors(key, update);
+        if (node == null || compareKeys(node.key, key) != 0 || !node.ids.remove(rowId) || node.ids.size() > 0) {
+            return;
+        }
+        // Last row with this value is gone: unlink the key
+        for (int i = 0; i < node.next.length; i++) {
+            update[i].next[i] = node.next[i];
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        size--;
+    }
+
+    int count(Object key) {
+        RowIdSet ids = find(key);
+        return ids == null ? 0 : ids.size();
+    }
+
+    void forEach(Object key, IntConsumer action) {
+        RowIdSet ids = find(key);
+        if (ids != null) {
+            ids.forEach(action);
+        }
+    }
+
+    private RowIdSet find(Object key) {
+        Node node = ceiling(key, true);
+        return node != null && compareKeys(node.key, key) == 0 ? node.ids : null;
+    }
+
+    public int distinctValues() {
+        return size;
+    }
+
+    // First node whose key is at or after bound (strictly after unless inclusive), or null
+    private Node ceiling(Object bound, boolean inclusive) {
+        Node node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null) {
+                int comparison = compareKeys(node.next[i].key, bound);
+                if (comparison > 0 || (comparison == 0 && inclusive)) {
+                    break;
+                }
+                node = node.next[i];
+            }
+        }
+        return node.next[0];
+    }
+
+    // Visit the ids of the rows whose key lies in range, in ascending key order
+    void forEachInRange(Range range, IntConsumer action) {
+        if (range.isEmpty()) {
+            return;
+        }
+        Node node = range.lower == null ? head.next[0] : ceiling(range.lower, range.lowerInclusive);
+        for (; node != null; node = node.next[0]) {
+            if (range.upper != null) {
+                int comparison = compareKeys(node.key, range.upper);
+                if (comparison > 0 || (comparison == 0 && !range.upperInclusive)) {
+                    break;
+                }
+            }
+            node.ids.forEach(action);
+        }
+    }
+
+    // Interval of index keys, narrowed by WHERE conditions; a null bound is open-ended
+    static final class Range {
+        Object lower;
+        boolean lowerInclusive = true;
+        Object upper;
+        boolean upperInclusive = true;
+
+        Range(Object lower, Object upper) {
+            this.lower = lower;
+            this.upper = upper;
+        }
+
+        // Narrow to the keys meeting "key operator bound"
+        void restrict(String operator, Object bound) {
+            switch (operator) {
+                case "=":
+                    restrictLower(bound, true);
+                    restrictUpper(bound, true);
+                    break;
+                case ">":
+                    restrictLower(bound, false);
+                    break;
+                case ">=":
+                    restrictLower(bound, true);
+                    break;
+                case "<":
+                    restrictUpper(bound, false);
+                    break;
+                case "<=":
+                    restrictUpper(bound, true);
+                    break;
+            }
+        }
+
+        private void restrictLower(Object bound, boolean inclusive) {
+            int comparison = lower == null ? 1 : compareKeys(bound, lower);
+            if (comparison > 0 || (comparison == 0 && !inclusive)) {
+                lower = bound;
+                lowerInclusive = inclusive;
+            }
+        }
+
+        private void restrictUpper(Object bound, boolean inclusive) {
+            int comparison = upper == null ? -1 : compareKeys(bound, upper);
+            if (comparison < 0 || (comparison == 0 && !inclusive)) {
+                upper = bound;
+                upperInclusive = inclusive;
+            }
+        }
+
+        boolean isEmpty() {
+            if (lower == null || upper == null) {
+                return false;
+            }
+            int comparison = compareKeys(lower, upper);
+            return comparison > 0 || (comparison == 0 && !(lowerInclusive && upperInclusive));
+        }
+    }
+}
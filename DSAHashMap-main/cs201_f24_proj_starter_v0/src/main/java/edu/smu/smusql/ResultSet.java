@@ -0,0 +1,191 @@
+package edu.smu.smusql;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// Rows of a SELECT (see Engine.query), read one at a time with next() and then the getters, e.g.
+//   ResultSet result = engine.query("SELECT * FROM users WHERE age > 30 LIMIT 10");
+//   while (result.next()) { int id = (Integer) result.getValue("id"); ... }
+// Rows found through an index are gathered when the query runs; a scan of a row map is only
+// read batch by batch as the rows are asked for (see RowBatch), so it stops where the reader, or
+// the LIMIT, does. Values come as the table keeps them: Integer, Long, Double or String for typed
+// columns, the text of the query for untyped ones; null, written as NULL, stands for no value, as
+// in the right columns of a LEFT JOIN's unmatched row or an aggregate over no rows.
+// Until the result is read or closed, a table other than SNAPSHOT must not be written to; the
+// scan then fails with ConcurrentModificationException. A SNAPSHOT table's scan reads the rows as
+// they were when the query ran.
+public class ResultSet implements AutoCloseable {
+    private static final int CHUNK_CHARS = 1 << 16; // Text written at a time by writeTo
+
+    private final List<String> columns;
+    private final ParallelScan.Matches matches; // Rows gathered up front, or null for a scan
+    private RowMap.RowSpliterator scan; // Rows not yet batched, null once done
+    private final RowBatch batch;
+    private int position; // Next row of matches, or next selected position of batch
+    private int remaining; // Rows the LIMIT still allows, Integer.MAX_VALUE without one
+    private Table.Row row; // Current row, null before the first and after the last
+
+    // Rows gathered up front
+    ResultSet(List<String> columns, ParallelScan.Matches matches, int limit) {
+        this.columns = columns;
+        this.matches = matches;
+        this.batch = null;
+        this.remaining = limit < 0 ? Integer.MAX_VALUE : limit;
+    }
+
+    // Rows of a traversal meeting a predicate, filtered as they are read
+    ResultSet(List<String> columns, RowMap.RowSpliterator scan, RowPredicate where, int limit) {
+        this.columns = columns;
+        this.matches = null;
+        this.scan = scan;
+        this.batch = new RowBatch(where, null);
+        this.remaining = limit < 0 ? Integer.MAX_VALUE : limit;
+    }
+
+    public List<String> getColumnNames() {
+        return columns;
+    }
+
+    // Move to the next row; false once there are no more rows, which also closes the result
+    public boolean next() {
+        if (remaining == 0) {
+            close();
+            return false;
+        }
+        if (matches != null) {
+            if (position == matches.size) {
+                close();
+                return false;
+            }
+            row = matches.rows[position++];
+        } else {
+            while (position == batch.selected) {
+                if (scan == null || !batch.fill(scan)) {
+                    close();
+                    return false;
+                }
+                position = 0;
+            }
+            row = batch.rows[batch.selection[position++]];
+        }
+        remaining--;
+        return true;
+    }
+
+    // Value of the current row in column, counting from 0
+    public Object getValue(int column) {
+        if (row == null) {
+            throw new IllegalStateException("ResultSet is not positioned on a row");
+        }
+        return row.getValue(column);
+    }
+
+    public Object getValue(String column) {
+        int index = columns.indexOf(column);
+        if (index == -1) {
+            throw new IllegalArgumentException("No such column: " + column);
+        }
+        return getValue(index);
+    }
+
+    public String getString(int column) {
+        Object value = getValue(column);
+        return value == null ? null : value.toString();
+    }
+
+    // Value of a numeric column, or of an untyped one holding a number.
+    // Throws NumberFormatException if the value is not a whole number, or null.
+    public long getLong(int column) {
+        Object value = getValue(column);
+        if (value == null) {
+            throw new NumberFormatException("null");
+        }
+        if (value instanceof Integer || value instanceof Long) {
+            return ((Number) value).longValue();
+        }
+        return Long.parseLong(value.toString());
+    }
+
+    // Throws NumberFormatException if the value is not a number, or null
+    public double getDouble(int column) {
+        Object value = getValue(column);
+        if (value == null) {
+            throw new NumberFormatException("null");
+        }
+        return value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(value.toString());
+    }
+
+    // The current row, for the operators that consume a result (see Join)
+    Table.Row row() {
+        return row;
+    }
+
+    // Stop reading: a scan is dropped without visiting its remaining rows
+    @Override
+    public void close() {
+        row = null;
+        scan = null;
+        remaining = 0;
+    }
+
+    // Write the column names and the rows not read yet, as Engine.executeSQL lists them, a chunk
+    // of text at a time (all at once into a StringBuilder). Closes the result.
+    public void writeTo(Appendable out) throws IOException {
+        if (out instanceof StringBuilder) {
+            writeTo((StringBuilder) out);
+            return;
+        }
+        StringBuilder chunk = new StringBuilder(CHUNK_CHARS + 256);
+        appendHeader(chunk);
+        boolean more;
+        do {
+            more = appendRows(chunk, CHUNK_CHARS);
+            out.append(chunk);
+            chunk.setLength(0);
+        } while (more);
+    }
+
+    // Like writeTo(Appendable), encoded in UTF-8
+    public void writeTo(WritableByteChannel out) throws IOException {
+        StringBuilder chunk = new StringBuilder(CHUNK_CHARS + 256);
+        appendHeader(chunk);
+        boolean more;
+        do {
+            more = appendRows(chunk, CHUNK_CHARS);
+            ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(chunk));
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+            chunk.setLength(0);
+        } while (more);
+    }
+
+    void writeTo(StringBuilder out) {
+        appendHeader(out);
+        appendRows(out, Integer.MAX_VALUE);
+    }
+
+    private void appendHeader(StringBuilder out) {
+        out.append(String.join("\t", columns)).append("\n");
+    }
+
+    // Append rows until out holds at least limit characters; false once every row is written
+    private boolean appendRows(StringBuilder out, int limit) {
+        int columnCount = columns.size();
+        while (out.length() < limit) {
+            if (!next()) {
+                return false;
+            }
+            for (int column = 0; column < columnCount; column++) {
+                Object value = row.getValue(column);
+                out.append(value == null ? "NULL" : value.toString()).append("\t");
+            }
+            out.append("\n");
+        }
+        return true;
+    }
+}
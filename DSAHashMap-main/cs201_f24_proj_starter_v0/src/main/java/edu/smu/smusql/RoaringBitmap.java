@@ -0,0 +1,361 @@
+package edu.smu.smusql;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Compressed set of non-negative ints in the style of Roaring bitmaps, used for the row ids of a
+// BITMAP index. Ids are split by their high 16 bits into chunks of 65536; each chunk present is a
+// container holding the low 16 bits, either a sorted char[] while it has at most 4096 ids or a
+// 65536-bit long[] once it has more, until removals take it below 2048. Row ids are handed out in
+// order, so a value's ids fill neighbouring chunks and dense values settle into bitmap containers.
+// and/or return new bitmaps and never change their operands.
+public class RoaringBitmap {
+    private static final int ARRAY_MAX = 4096; // ids per array container; a bitmap container takes 8 KB either way
+    // Ids below which removals turn a bitmap container back into an array; lower than ARRAY_MAX so
+    // ids added and removed around it do not convert the container back and forth
+    private static final int BITMAP_MIN = ARRAY_MAX / 2;
+
+    private char[] highs = new char[4]; // high 16 bits of each container's ids, ascending
+    private Container[] containers = new Container[4];
+    private int count; // containers in use
+
+    public void add(int id) {
+        int index = findContainer((char) (id >>> 16));
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, (char) (id >>> 16), new ArrayContainer());
+        }
+        containers[index] = containers[index].add((char) id);
+    }
+
+    public void remove(int id) {
+        int index = findContainer((char) (id >>> 16));
+        if (index < 0) {
+            return;
+        }
+        Container container = containers[index].remove((char) id);
+        if (container.cardinality() == 0) {
+            System.arraycopy(highs, index + 1, highs, index, count - index - 1);
+            System.arraycopy(containers, index + 1, containers, index, count - index - 1);
+            count--;
+            containers[count] = null;
+        } else {
+            containers[index] = container;
+        }
+    }
+
+    public boolean contains(int id) {
+        int index = findContainer((char) (id >>> 16));
+        return index >= 0 && containers[index].contains((char) id);
+    }
+
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < count; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    // Visit every id in ascending order; the bitmap must not be changed meanwhile
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < count; i++) {
+            containers[i].forEach(highs[i] << 16, action);
+        }
+    }
+
+    // Ids in both this and other
+    public RoaringBitmap and(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0, j = 0;
+        while (i < count && j < other.count) {
+            if (highs[i] < other.highs[j]) {
+                i++;
+            } else if (highs[i] > other.highs[j]) {
+                j++;
+            } else {
+                Container container = containers[i].and(other.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.appendContainer(highs[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    // Ids in this or other
+    public RoaringBitmap or(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0, j = 0;
+        while (i < count || j < other.count) {
+            if (j == other.count || (i < count && highs[i] < other.highs[j])) {
+                result.appendContainer(highs[i], containers[i].copy());
+                i++;
+            } else if (i == count || highs[i] > other.highs[j]) {
+                result.appendContainer(other.highs[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.appendContainer(highs[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    // Index of the container for high, or -(insertion point) - 1 if absent
+    private int findContainer(char high) {
+        return Arrays.binarySearch(highs, 0, count, high);
+    }
+
+    private void insertContainer(int index, char high, Container container) {
+        if (count == highs.length) {
+            highs = Arrays.copyOf(highs, count * 2);
+            containers = Arrays.copyOf(containers, count * 2);
+        }
+        System.arraycopy(highs, index, highs, index + 1, count - index);
+        System.arraycopy(containers, index, containers, index + 1, count - index);
+        highs[index] = high;
+        containers[index] = container;
+        count++;
+    }
+
+    private void appendContainer(char high, Container container) {
+        insertContainer(count, high, container);
+    }
+
+    // Low 16 bits of the ids in one chunk. add/remove return the container to use from then on,
+    // which is a converted one when the cardinality rises past ARRAY_MAX or falls below BITMAP_MIN.
+    private abstract static class Container {
+        abstract Container add(char low);
+
+        abstract Container remove(char low);
+
+        abstract boolean contains(char low);
+
+        abstract int cardinality();
+
+        abstract void forEach(int base, IntConsumer action);
+
+        abstract Container and(Container other);
+
+        abstract Container or(Container other);
+
+        abstract Container copy();
+    }
+
+    private static final class ArrayContainer extends Container {
+        char[] values;
+        int size;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        Container add(char low) {
+            int index = Arrays.binarySearch(values, 0, size, low);
+            if (index >= 0) {
+                return this;
+            }
+            if (size == ARRAY_MAX) {
+                return toBitmap().add(low);
+            }
+            index = -index - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.max(4, Math.min(size * 2, ARRAY_MAX)));
+            }
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = low;
+            size++;
+            return this;
+        }
+
+        Container remove(char low) {
+            int index = Arrays.binarySearch(values, 0, size, low);
+            if (index >= 0) {
+                System.arraycopy(values, index + 1, values, index, size - index - 1);
+                size--;
+            }
+            return this;
+        }
+
+        boolean contains(char low) {
+            return Arrays.binarySearch(values, 0, size, low) >= 0;
+        }
+
+        int cardinality() {
+            return size;
+        }
+
+        void forEach(int base, IntConsumer action) {
+            for (int i = 0; i < size; i++) {
+                action.accept(base | values[i]);
+            }
+        }
+
+        Container and(Container other) {
+            char[] result = new char[size];
+            int n = 0;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                int i = 0, j = 0;
+                while (i < size && j < array.size) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        result[n++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < size; i++) {
+                    if (other.contains(values[i])) {
+                        result[n++] = values[i];
+                    }
+                }
+            }
+            return new ArrayContainer(result, n);
+        }
+
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.or(this);
+            }
+            ArrayContainer array = (ArrayContainer) other;
+            if (size + array.size > ARRAY_MAX) {
+                return toBitmap().or(other);
+            }
+            char[] result = new char[size + array.size];
+            int i = 0, j = 0, n = 0;
+            while (i < size || j < array.size) {
+                if (j == array.size || (i < size && values[i] < array.values[j])) {
+                    result[n++] = values[i++];
+                } else if (i == size || values[i] > array.values[j]) {
+                    result[n++] = array.values[j++];
+                } else {
+                    result[n++] = values[i];
+                    i++;
+                    j++;
+                }
+            }
+            return new ArrayContainer(result, n);
+        }
+
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(size, 1)), size);
+        }
+
+        private BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < size; i++) {
+                bitmap.add(values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        final long[] words = new long[1024];
+        int cardinality;
+
+        Container add(char low) {
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) == 0) {
+                words[low >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        Container remove(char low) {
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) != 0) {
+                words[low >>> 6] &= ~bit;
+                cardinality--;
+                if (cardinality < BITMAP_MIN) {
+                    return toArray();
+                }
+            }
+            return this;
+        }
+
+        boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        int cardinality() {
+            return cardinality;
+        }
+
+        void forEach(int base, IntConsumer action) {
+            for (int w = 0; w < words.length; w++) {
+                for (long word = words[w]; word != 0; word &= word - 1) {
+                    action.accept(base | (w << 6) | Long.numberOfTrailingZeros(word));
+                }
+            }
+        }
+
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            BitmapContainer result = new BitmapContainer();
+            long[] otherWords = ((BitmapContainer) other).words;
+            for (int w = 0; w < words.length; w++) {
+                result.words[w] = words[w] & otherWords[w];
+                result.cardinality += Long.bitCount(result.words[w]);
+            }
+            return result.cardinality <= ARRAY_MAX ? result.toArray() : result;
+        }
+
+        Container or(Container other) {
+            BitmapContainer result = (BitmapContainer) copy();
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.size; i++) {
+                    result.add(array.values[i]);
+                }
+                return result;
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            result.cardinality = 0;
+            for (int w = 0; w < words.length; w++) {
+                result.words[w] |= otherWords[w];
+                result.cardinality += Long.bitCount(result.words[w]);
+            }
+            return result;
+        }
+
+        Container copy() {
+            BitmapContainer copy = new BitmapContainer();
+            System.arraycopy(words, 0, copy.words, 0, words.length);
+            copy.cardinality = cardinality;
+            return copy;
+        }
+
+        private ArrayContainer toArray() {
+            char[] values = new char[Math.max(cardinality, 1)];
+            int n = 0;
+            for (int w = 0; w < words.length; w++) {
+                for (long word = words[w]; word != 0; word &= word - 1) {
+                    values[n++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                }
+            }
+            return new ArrayContainer(values, n);
+        }
+    }
+}
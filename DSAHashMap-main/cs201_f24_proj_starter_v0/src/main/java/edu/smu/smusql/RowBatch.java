@@ -0,0 +1,74 @@
+package edu.smu.smusql;
+
+import java.util.function.Consumer;
+
+// Rows of a row map read SIZE at a time: visited rows are copied into the batch, and once it is
+// full the WHERE predicate narrows a selection vector of the positions that qualify (see
+// RowPredicate.filter) before the batch is handed to a consumer, which reads the selected rows.
+// The batch is reused for the next rows once the consumer returns. A reader that pulls rows, such
+// as a ResultSet, refills the batch from a traversal instead (see fill).
+final class RowBatch implements RowMap.Visitor {
+    static final int SIZE = 1024;
+
+    final int[] keys = new int[SIZE];
+    final Table.Row[] rows = new Table.Row[SIZE];
+    final int[] selection = new int[SIZE]; // Positions of the selected rows, in visiting order
+    int size;
+    int selected;
+    private final RowPredicate where;
+    private final Consumer<RowBatch> consumer;
+    private final RowMap.Visitor collect = this::collect;
+
+    RowBatch(RowPredicate where, Consumer<RowBatch> consumer) {
+        this.where = where;
+        this.consumer = consumer;
+    }
+
+    // Visit every row of a map in batches, each batch handed on with its rows meeting the predicate
+    // selected. The consumer must not modify the map.
+    static void scan(RowMap map, RowPredicate where, Consumer<RowBatch> consumer) {
+        RowBatch batch = new RowBatch(where, consumer);
+        map.forEach(batch);
+        batch.flush();
+    }
+
+    @Override
+    public void visit(int key, Table.Row row) {
+        collect(key, row);
+        if (size == SIZE) {
+            flush();
+        }
+    }
+
+    // Filter the rows visited since the last batch and hand them on, if any qualify
+    void flush() {
+        select();
+        if (selected > 0) {
+            consumer.accept(this);
+        }
+        size = 0;
+    }
+
+    // Replace the batch with the next rows of a traversal, up to SIZE, and select those meeting
+    // the predicate; false once the traversal has no rows left. The batch needs no consumer.
+    boolean fill(RowMap.RowSpliterator traversal) {
+        size = 0;
+        while (size < SIZE && traversal.tryAdvance(collect)) {
+        }
+        select();
+        return size > 0;
+    }
+
+    private void collect(int key, Table.Row row) {
+        keys[size] = key;
+        rows[size] = row;
+        size++;
+    }
+
+    private void select() {
+        for (int i = 0; i < size; i++) {
+            selection[i] = i;
+        }
+        selected = size == 0 ? 0 : where.filter(rows, selection, size);
+    }
+}
@@ -0,0 +1,93 @@
+package edu.smu.smusql;
+
+import java.util.function.IntConsumer;
+
+// Open-addressing set of row ids, the entries of a secondary index.
+// Row ids start at 1, so 0 marks an empty slot; removal uses backward-shift deletion like IntRowMap.
+public class RowIdSet {
+    private static final int INITIAL_CAPACITY = 4; // must be a power of two
+    private static final float MAX_LOAD_FACTOR = 0.75f;
+
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private int mask = INITIAL_CAPACITY - 1;
+    private int size;
+
+    // Add id; returns false if it was already present
+    public boolean add(int id) {
+        int index = IntRowMap.mix(id) & mask;
+        while (ids[index] != 0) {
+            if (ids[index] == id) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        ids[index] = id;
+        size++;
+        if (size > ids.length * MAX_LOAD_FACTOR) {
+            grow();
+        }
+        return true;
+    }
+
+    public boolean contains(int id) {
+        int index = IntRowMap.mix(id) & mask;
+        while (ids[index] != 0) {
+            if (ids[index] == id) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    // Remove id; returns false if it was not present
+    public boolean remove(int id) {
+        int hole = IntRowMap.mix(id) & mask;
+        while (ids[hole] != id) {
+            if (ids[hole] == 0) {
+                return false;
+            }
+            hole = (hole + 1) & mask;
+        }
+        int index = (hole + 1) & mask;
+        while (ids[index] != 0) {
+            int ideal = IntRowMap.mix(ids[index]) & mask;
+            if (((index - ideal) & mask) >= ((index - hole) & mask)) {
+                ids[hole] = ids[index];
+                hole = index;
+            }
+            index = (index + 1) & mask;
+        }
+        ids[hole] = 0;
+        size--;
+        return true;
+    }
+
+    private void grow() {
+        int[] previous = ids;
+        ids = new int[previous.length * 2];
+        mask = ids.length - 1;
+        for (int id : previous) {
+            if (id != 0) {
+                int index = IntRowMap.mix(id) & mask;
+                while (ids[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                ids[index] = id;
+            }
+        }
+    }
+
+    // Visit every id; the set must not be changed meanwhile
+    public void forEach(IntConsumer action) {
+        for (int id : ids) {
+            if (id != 0) {
+                action.accept(id);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,66 @@
+package edu.smu.smusql;
+
+import java.util.Spliterator;
+
+// Map from a table's int primary keys to its rows.
+// IntRowMap is the mutable open-addressing implementation; HamtRowMap is a persistent trie whose
+// scans read an immutable snapshot while writers keep going.
+public interface RowMap {
+    // Put key-row pair into the map, replacing any existing row for key
+    void put(int key, Table.Row row);
+
+    // Get the row for key, or null if absent
+    Table.Row get(int key);
+
+    boolean containsKey(int key);
+
+    // Remove key and return its row (null if absent)
+    Table.Row remove(int key);
+
+    int size();
+
+    // Visit every key-row pair in place
+    void forEach(Visitor visitor);
+
+    // Cursor over the map that supports removing the current row
+    Cursor cursor();
+
+    // Splittable traversal of the rows, used by ParallelScan
+    RowSpliterator spliterator();
+
+    // Start recording probe lengths and resize events
+    void enableStats();
+
+    void disableStats();
+
+    // Current stats, or null if not enabled
+    HashStats getStats();
+
+    // Callback for forEach, taking the key unboxed
+    interface Visitor {
+        void visit(int key, Table.Row row);
+    }
+
+    interface Cursor {
+        // Advance to the next row; returns false once every row has been visited
+        boolean next();
+
+        int key();
+
+        Table.Row row();
+
+        // Remove the current row from the map
+        void remove();
+    }
+
+    interface RowSpliterator extends Spliterator<Table.Row> {
+        // Like tryAdvance, but also hands over the row's key
+        boolean tryAdvance(Visitor visitor);
+
+        // Like forEachRemaining, but also hands over each row's key
+        void forEachRemaining(Visitor visitor);
+
+        @Override
+        RowSpliterator trySplit();
+    }
+}
@@ -0,0 +1,345 @@
+package edu.smu.smusql;
+
+import java.util.List;
+
+// A WHERE clause compiled once per statement for one table: every condition becomes a test with
+// its column's position, its operator and its converted value resolved up front, so testing a row
+// is a load of the value and a comparison. An operator is a mask of the comparison results it
+// accepts (see ColumnStore.operatorMask). Values compare as numbers when both sides are numbers
+// (see parseNumber) and as text otherwise, the same rules ColumnStore's column filters follow.
+// Rows are tested one at a time, or a batch at a time (see RowBatch): every condition then narrows
+// a selection vector, And and Or passing it through their tests in turn.
+abstract class RowPredicate {
+    static final RowPredicate TRUE = new RowPredicate() {
+        boolean test(Table.Row row) {
+            return true;
+        }
+
+        int filter(Table.Row[] rows, int[] selection, int selected) {
+            return selected;
+        }
+    };
+
+    abstract boolean test(Table.Row row);
+
+    // Keep, in order, the selected positions of rows whose row meets the predicate; returns how
+    // many are left
+    int filter(Table.Row[] rows, int[] selection, int selected) {
+        int kept = 0;
+        for (int i = 0; i < selected; i++) {
+            int position = selection[i];
+            if (test(rows[position])) {
+                selection[kept++] = position;
+            }
+        }
+        return kept;
+    }
+
+    // Conditions in OR-groups of ANDed conditions, as parsed, on columns the schema has; literals
+    // as from Engine.convertLiterals
+    static RowPredicate compile(Schema schema, List<String[]> conditions, Object[] literals) {
+        if (conditions.isEmpty()) {
+            return TRUE;
+        }
+        int groups = 1;
+        for (int i = 1; i < conditions.size(); i++) {
+            if (Engine.startsOrGroup(conditions.get(i))) {
+                groups++;
+            }
+        }
+        RowPredicate[] any = new RowPredicate[groups];
+        int start = 0;
+        for (int g = 0; g < groups; g++) {
+            int end = start + 1;
+            while (end < conditions.size() && !Engine.startsOrGroup(conditions.get(end))) {
+                end++;
+            }
+            RowPredicate[] all = new RowPredicate[end - start];
+            for (int i = start; i < end; i++) {
+                all[i - start] = condition(schema, conditions.get(i), literals[i]);
+            }
+            any[g] = all.length == 1 ? all[0] : new And(all);
+            start = end;
+        }
+        return any.length == 1 ? any[0] : new Or(any);
+    }
+
+    private static RowPredicate condition(Schema schema, String[] condition, Object literal) {
+        int column = schema.getColumnNames().indexOf(condition[0]);
+        if (condition[1].equals("LIKE")) {
+            return new Like(column, (String) literal);
+        }
+        int mask = ColumnStore.operatorMask(condition[1]);
+        if (literal instanceof Double) {
+            return new NumberCompare(column, mask, (Double) literal);
+        }
+        if (literal != null) {
+            return text(schema, column, condition[1], (String) literal); // Typed VARCHAR column
+        }
+        Double number = parseNumber(condition[2]);
+        return number == null
+                ? text(schema, column, condition[1], condition[2]) // Untyped: text never compares as a number
+                : new TextOrNumberCompare(column, mask, condition[2], number);
+    }
+
+    // Comparison with text, by reference for "=" with text the column's dictionary has a code for
+    private static RowPredicate text(Schema schema, int column, String operator, String literal) {
+        if (operator.equals("=")) {
+            String shared = schema.sharedText(column, literal);
+            if (shared != null) {
+                return new SharedTextEquals(column, shared);
+            }
+        }
+        return new TextCompare(column, ColumnStore.operatorMask(operator), literal);
+    }
+
+    static boolean accepts(int mask, int comparison) {
+        return (mask >> (Integer.signum(comparison) + 1) & 1) != 0;
+    }
+
+    // Value of text that is an integer of at most 15 digits, which a double holds exactly, read
+    // without Double.parseDouble; NaN for any other text
+    static double parseInteger(String text) {
+        int length = text.length();
+        int i = length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+') ? 1 : 0;
+        if (i == length || length - i > 15) {
+            return Double.NaN;
+        }
+        long value = 0;
+        for (; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return Double.NaN;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return text.charAt(0) == '-' ? -(double) value : value;
+    }
+
+    // Value of numeric text as Double.parseDouble reads it, or null if it is not a number. WHERE
+    // comparisons, index keys and zone maps all decide through it whether untyped text is numeric.
+    // Short integers skip Double.parseDouble, and so does text that cannot start a number, so plain
+    // words are turned away without the cost of an exception.
+    static Double parseNumber(String text) {
+        if (text.isEmpty() || text.charAt(0) == '\'') {
+            return null; // Quoted text is never a number
+        }
+        double integer = parseInteger(text);
+        if (!Double.isNaN(integer)) {
+            return integer;
+        }
+        if (!mayBeNumber(text)) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Whether Double.parseDouble may accept text: past leading whitespace and a sign it must go on
+    // with a digit, a point, NaN or Infinity
+    private static boolean mayBeNumber(String text) {
+        int length = text.length();
+        int i = 0;
+        while (i < length && text.charAt(i) <= ' ') {
+            i++;
+        }
+        if (i < length && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            i++;
+        }
+        if (i == length) {
+            return false;
+        }
+        char c = text.charAt(i);
+        return (c >= '0' && c <= '9') || c == '.' || text.startsWith("NaN", i) || text.startsWith("Infinity", i);
+    }
+
+    // Row meets every one of the tests
+    private static final class And extends RowPredicate {
+        private final RowPredicate[] all;
+
+        And(RowPredicate[] all) {
+            this.all = all;
+        }
+
+        boolean test(Table.Row row) {
+            for (RowPredicate predicate : all) {
+                if (!predicate.test(row)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int filter(Table.Row[] rows, int[] selection, int selected) {
+            for (int i = 0; i < all.length && selected > 0; i++) {
+                selected = all[i].filter(rows, selection, selected);
+            }
+            return selected;
+        }
+    }
+
+    // Row meets at least one of the tests
+    private static final class Or extends RowPredicate {
+        private final RowPredicate[] any;
+
+        Or(RowPredicate[] any) {
+            this.any = any;
+        }
+
+        boolean test(Table.Row row) {
+            for (RowPredicate predicate : any) {
+                if (predicate.test(row)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Each test only sees the positions no earlier one kept
+        int filter(Table.Row[] rows, int[] selection, int selected) {
+            boolean[] kept = new boolean[rows.length];
+            int[] candidates = new int[selected];
+            for (RowPredicate predicate : any) {
+                int remaining = 0;
+                for (int i = 0; i < selected; i++) {
+                    if (!kept[selection[i]]) {
+                        candidates[remaining++] = selection[i];
+                    }
+                }
+                int passed = predicate.filter(rows, candidates, remaining);
+                for (int i = 0; i < passed; i++) {
+                    kept[candidates[i]] = true;
+                }
+            }
+            int left = 0;
+            for (int i = 0; i < selected; i++) {
+                if (kept[selection[i]]) {
+                    selection[left++] = selection[i];
+                }
+            }
+            return left;
+        }
+    }
+
+    // Numeric typed column against a number
+    private static final class NumberCompare extends RowPredicate {
+        private final int column;
+        private final int mask;
+        private final double literal;
+
+        NumberCompare(int column, int mask, double literal) {
+            this.column = column;
+            this.mask = mask;
+            this.literal = literal;
+        }
+
+        boolean test(Table.Row row) {
+            Object value = row.getValue(column);
+            return value != null && accepts(mask, Double.compare(((Number) value).doubleValue(), literal));
+        }
+
+        // The comparison of most typed scans, made in the loop itself rather than through the
+        // shared loop's call of test, which sees every kind of leaf
+        int filter(Table.Row[] rows, int[] selection, int selected) {
+            int kept = 0;
+            for (int i = 0; i < selected; i++) {
+                int position = selection[i];
+                Object value = rows[position].getValue(column);
+                if (value != null && accepts(mask, Double.compare(((Number) value).doubleValue(), literal))) {
+                    selection[kept++] = position;
+                }
+            }
+            return kept;
+        }
+    }
+
+    // Typed VARCHAR column against unquoted text, or untyped column against text that is not a number
+    private static final class TextCompare extends RowPredicate {
+        private final int column;
+        private final int mask;
+        private final String literal;
+
+        TextCompare(int column, int mask, String literal) {
+            this.column = column;
+            this.mask = mask;
+            this.literal = literal;
+        }
+
+        boolean test(Table.Row row) {
+            Object value = row.getValue(column);
+            return value != null && accepts(mask, value.toString().compareTo(literal));
+        }
+    }
+
+    // Row-store text column equal to text with a code in the column's StringDictionary. Every row
+    // holding that text holds the dictionary's shared instance of it, so a match is the same reference.
+    private static final class SharedTextEquals extends RowPredicate {
+        private final int column;
+        private final String shared;
+
+        SharedTextEquals(int column, String shared) {
+            this.column = column;
+            this.shared = shared;
+        }
+
+        boolean test(Table.Row row) {
+            return row.getValue(column) == shared;
+        }
+    }
+
+    // Untyped column against a number: as a number where the value is one, as text elsewhere
+    private static final class TextOrNumberCompare extends RowPredicate {
+        private final int column;
+        private final int mask;
+        private final String text;
+        private final double number;
+
+        TextOrNumberCompare(int column, int mask, String text, double number) {
+            this.column = column;
+            this.mask = mask;
+            this.text = text;
+            this.number = number;
+        }
+
+        boolean test(Table.Row row) {
+            Object value = row.getValue(column);
+            if (value == null) {
+                return false;
+            }
+            return accepts(mask, compareTextOrNumber(value.toString(), text, number));
+        }
+    }
+
+    // Comparison of an untyped value with a numeric literal, whose text is text: as numbers where
+    // the value is a number, as text elsewhere
+    static int compareTextOrNumber(String value, String text, double number) {
+        double valueNumber = parseInteger(value);
+        if (Double.isNaN(valueNumber)) {
+            Double parsed = parseNumber(value); // Rarer numbers, and text
+            if (parsed == null) {
+                return value.compareTo(text);
+            }
+            valueNumber = parsed;
+        }
+        return Double.compare(valueNumber, number);
+    }
+
+    // Any column against a LIKE pattern, on the value's unquoted text
+    private static final class Like extends RowPredicate {
+        private final int column;
+        private final String pattern;
+
+        Like(int column, String pattern) {
+            this.column = column;
+            this.pattern = pattern;
+        }
+
+        boolean test(Table.Row row) {
+            Object value = row.getValue(column);
+            return value != null && Engine.like(ColumnType.unquote(value.toString()), pattern);
+        }
+    }
+}
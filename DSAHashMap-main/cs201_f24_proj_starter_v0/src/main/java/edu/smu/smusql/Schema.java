@@ -0,0 +1,70 @@
+package edu.smu.smusql;
+
+import java.util.Collections;
+import java.util.List;
+
+// Column names and declared types of rows, and the conversions WHERE, indexes and aggregates make
+// from them alone. A Table is one; the rows of a join are described by a bare Schema (see Join).
+public class Schema {
+    public List<String> columnNames;  // Table schema (column names)
+    public List<ColumnType> columnTypes; // Declared type of each column, null for untyped columns
+
+    // columnTypes may be null, or hold null entries, for untyped columns
+    Schema(List<String> columnNames, List<ColumnType> columnTypes) {
+        this.columnNames = columnNames;
+        this.columnTypes = columnTypes != null ? columnTypes : Collections.nCopies(columnNames.size(), null);
+        if (this.columnTypes.size() != columnNames.size()) {
+            throw new IllegalArgumentException("Number of column types doesn't match the schema");
+        }
+    }
+
+    // Get the column names (schema)
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    // Key under which a column value is indexed. Two values get equal keys exactly when a WHERE
+    // "=" finds them equal: numbers, typed or untyped numeric text, by their double value, and
+    // anything else by its text.
+    Object indexKey(int columnIndex, Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null value for column " + columnNames.get(columnIndex));
+        }
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        String text = value.toString();
+        if (columnTypes.get(columnIndex) == null) {
+            Double number = RowPredicate.parseNumber(text);
+            if (number != null) {
+                return number;
+            }
+        }
+        return text; // Compared as text
+    }
+
+    // A WHERE literal converted once for comparing against a typed column's native values
+    // (see ColumnType.literal), or null for untyped columns
+    public Object convertLiteral(int columnIndex, String literal) {
+        ColumnType type = columnTypes.get(columnIndex);
+        if (type == null) {
+            return null;
+        }
+        try {
+            return type.literal(literal);
+        } catch (IllegalArgumentException e) {
+            throw invalidValue(columnIndex, literal);
+        }
+    }
+
+    IllegalArgumentException invalidValue(int columnIndex, Object value) {
+        return new IllegalArgumentException("Invalid value for column " + columnNames.get(columnIndex)
+                + " (" + columnTypes.get(columnIndex) + "): " + value);
+    }
+
+    // The instance every row holding text in a column shares, or null if they need not share one.
+    // Rows of a bare Schema come from elsewhere, so none is known.
+    String sharedText(int columnIndex, String text) {
+        return null;
+    }
+}
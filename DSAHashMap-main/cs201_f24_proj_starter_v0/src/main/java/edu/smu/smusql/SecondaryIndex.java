@@ -0,0 +1,36 @@
+package edu.smu.smusql;
+
+import java.util.function.IntConsumer;
+
+// Index on one column of a table (CREATE INDEX idx ON users (city) [USING HASH|RANGE|BITMAP]).
+// Maps the index key of each value in the column (see Table.indexKey) to the ids of the rows
+// holding it. Table keeps it up to date on every insert, update and delete.
+public abstract class SecondaryIndex {
+    public String indexName;
+    public int columnIndex;
+
+    // Kind of index named by CREATE INDEX ... USING
+    public enum Type {
+        HASH, // "=" lookups only
+        RANGE, // Ordered, also answers <, >, <=, >= and their AND-combinations
+        BITMAP // Compressed bitmap per value, combined across conditions with AND and OR
+    }
+
+    protected SecondaryIndex(String indexName, int columnIndex) {
+        this.indexName = indexName;
+        this.columnIndex = columnIndex;
+    }
+
+    abstract void add(Object key, int rowId);
+
+    abstract void remove(Object key, int rowId);
+
+    // Number of rows whose value has this index key
+    abstract int count(Object key);
+
+    // Visit the ids of the rows whose value has this index key
+    abstract void forEach(Object key, IntConsumer action);
+
+    // Number of distinct values in the column
+    public abstract int distinctValues();
+}
@@ -0,0 +1,146 @@
+package edu.smu.smusql;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// A parsed smuSQL statement (see Parser); Engine.execute runs it.
+// Values are kept as written, quotes included, since untyped columns store the text of the query.
+// A WHERE clause is a list of conditions {column, operator, value, connector}, operator one of
+// =, <, >, <=, >= and LIKE: OR-groups of ANDed conditions, each group's first condition after
+// the first group having the connector "OR" and every other one "AND". Parentheses in the query
+// are multiplied out into this form by the parser.
+// A ? placeholder for a value is kept as "?" and its number, counting from 0 in the order the
+// placeholders appear; no other value starts with "?". See PreparedStatement.
+public abstract class Statement {
+    public String tableName; // Table the statement is on; null for an ANALYZE of every table
+    public int parameters; // Number of ? placeholders
+
+    // This statement with the values, SQL text, bound to its placeholders. WHERE conditions are
+    // copied either way, since running a statement reorders them.
+    Statement bind(String[] values) {
+        return this;
+    }
+
+    static String parameter(int index) {
+        return "?" + index;
+    }
+
+    // The value, or what is bound to it if it is a placeholder
+    static String bind(String value, String[] values) {
+        if (value.isEmpty() || value.charAt(0) != '?') {
+            return value;
+        }
+        return values[Integer.parseInt(value, 1, value.length(), 10)];
+    }
+
+    static List<String[]> bind(List<String[]> where, String[] values) {
+        List<String[]> bound = new ArrayList<>(where.size());
+        for (String[] condition : where) {
+            bound.add(new String[]{condition[0], condition[1], bind(condition[2], values), condition[3]});
+        }
+        return bound;
+    }
+
+    // CREATE TABLE tableName (column [TYPE] [PRIMARY KEY], ...) [STORAGE mode]
+    public static final class CreateTable extends Statement {
+        public List<String> columns;
+        public List<ColumnType> columnTypes; // null entries for untyped columns
+        public String primaryKey; // null if no column is declared PRIMARY KEY
+        public Table.Storage storage;
+    }
+
+    // CREATE INDEX indexName ON tableName (column) [USING HASH|RANGE|BITMAP]
+    public static final class CreateIndex extends Statement {
+        public String indexName;
+        public String column;
+        public SecondaryIndex.Type type;
+    }
+
+    // INSERT INTO tableName VALUES (value, ...)
+    public static final class Insert extends Statement {
+        public List<String> values;
+
+        @Override
+        Statement bind(String[] values) {
+            Insert bound = new Insert();
+            bound.tableName = tableName;
+            bound.values = new ArrayList<>(this.values.size());
+            for (String value : this.values) {
+                bound.values.add(bind(value, values));
+            }
+            return bound;
+        }
+    }
+
+    // SELECT *|item, ... FROM tableName [[INNER|LEFT] JOIN joinTable ON column = column] [WHERE ...]
+    //   [GROUP BY column, ...] [LIMIT n]
+    // An item of a select list is {function, column}: a plain column has a null function, an
+    // aggregate one of COUNT, SUM, AVG, MIN and MAX, and COUNT(*) the column "*".
+    // With a JOIN, a column is named table.column, or by its name alone if only one table has it.
+    public static final class Select extends Statement {
+        public List<String[]> items; // null for SELECT *
+        public String joinTable; // null without a JOIN
+        public boolean leftJoin; // LEFT rather than INNER JOIN
+        public String[] joinOn; // The two columns the JOIN's ON clause equates
+        public List<String[]> where; // Empty without a WHERE clause
+        public List<String> groupBy; // Empty without a GROUP BY clause
+        public int limit = -1; // Most rows to return, -1 without a LIMIT clause
+
+        @Override
+        Statement bind(String[] values) {
+            Select bound = new Select();
+            bound.tableName = tableName;
+            bound.items = items;
+            bound.joinTable = joinTable;
+            bound.leftJoin = leftJoin;
+            bound.joinOn = joinOn;
+            bound.where = bind(where, values);
+            bound.groupBy = groupBy;
+            bound.limit = limit;
+            return bound;
+        }
+    }
+
+    // UPDATE tableName SET column = value [WHERE ...]
+    public static final class Update extends Statement {
+        public String column;
+        public String value;
+        public List<String[]> where;
+
+        @Override
+        Statement bind(String[] values) {
+            Update bound = new Update();
+            bound.tableName = tableName;
+            bound.column = column;
+            bound.value = bind(value, values);
+            bound.where = bind(where, values);
+            return bound;
+        }
+    }
+
+    // DELETE FROM tableName [WHERE ...]
+    public static final class Delete extends Statement {
+        public List<String[]> where;
+
+        @Override
+        Statement bind(String[] values) {
+            Delete bound = new Delete();
+            bound.tableName = tableName;
+            bound.where = bind(where, values);
+            return bound;
+        }
+    }
+
+    // ANALYZE [tableName]
+    public static final class Analyze extends Statement {
+    }
+
+    // SET STATS tableName ON|OFF
+    public static final class SetStats extends Statement {
+        public boolean enable;
+    }
+
+    // SHOW STATS tableName
+    public static final class ShowStats extends Statement {
+    }
+}
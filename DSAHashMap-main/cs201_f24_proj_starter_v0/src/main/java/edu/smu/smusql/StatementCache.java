@@ -0,0 +1,94 @@
+package edu.smu.smusql;
+
+// The most recently used prepared statements by normalized SQL text (see Engine.prepare), up to a
+// capacity: a HashMap from text to node, and a doubly linked list of the nodes from most to least
+// recently used, the last one evicted to make room. Every operation but invalidate takes
+// constant time.
+class StatementCache {
+    private static final class Node {
+        final String sql;
+        final PreparedStatement statement;
+        Node previous; // More recently used
+        Node next; // Less recently used
+
+        Node(String sql, PreparedStatement statement) {
+            this.sql = sql;
+            this.statement = statement;
+        }
+    }
+
+    private final int capacity;
+    private final HashMap<String, Node> nodes = new HashMap<>();
+    private Node head; // Most recently used, null if empty
+    private Node tail; // Least recently used
+
+    StatementCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    // Statement cached for the text, now the most recently used; null if there is none
+    PreparedStatement get(String sql) {
+        Node node = nodes.get(sql);
+        if (node == null) {
+            return null;
+        }
+        if (node != head) {
+            unlink(node);
+            linkFirst(node);
+        }
+        return node.statement;
+    }
+
+    // Cache a statement as the most recently used, evicting the least recently used if full
+    void put(String sql, PreparedStatement statement) {
+        Node old = nodes.get(sql);
+        if (old != null) {
+            unlink(old);
+        }
+        Node node = new Node(sql, statement);
+        nodes.put(sql, node);
+        linkFirst(node);
+        if (nodes.size() > capacity) {
+            nodes.remove(tail.sql);
+            unlink(tail);
+        }
+    }
+
+    // Drop the statements on a table whose schema or indexes changed
+    void invalidate(String tableName) {
+        for (Node node = head; node != null; node = node.next) {
+            if (tableName.equals(node.statement.statement.tableName)) {
+                nodes.remove(node.sql);
+                unlink(node); // Leaves node.next as it was
+            }
+        }
+    }
+
+    int size() {
+        return nodes.size();
+    }
+
+    private void linkFirst(Node node) {
+        node.previous = null;
+        node.next = head;
+        if (head != null) {
+            head.previous = node;
+        } else {
+            tail = node;
+        }
+        head = node;
+    }
+
+    private void unlink(Node node) {
+        if (node.previous != null) {
+            node.previous.next = node.next;
+        } else {
+            head = node.next;
+        }
+        if (node.next != null) {
+            node.next.previous = node.previous;
+        } else {
+            tail = node.previous;
+        }
+    }
+}
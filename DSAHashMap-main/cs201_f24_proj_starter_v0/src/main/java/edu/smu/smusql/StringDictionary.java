@@ -0,0 +1,50 @@
+package edu.smu.smusql;
+
+import java.util.Arrays;
+
+// Distinct values of one text column of a row-store table, each kept as a single shared String
+// with an int code. HEAP and SNAPSHOT rows hold the shared instance, so a value repeated on
+// millions of rows is one String referenced from each; OFF_HEAP slots hold just the code.
+// Every stored value with a code is its shared instance, so equality with a value that has a code
+// is a reference compare (see RowPredicate.SharedTextEquals). Codes are never reclaimed: once
+// MAX_SIZE values have codes, new values are stored as they come.
+final class StringDictionary {
+    static final int MAX_SIZE = 1 << 12;
+
+    private String[] values = new String[16]; // shared instance of each code
+    private int size;
+    private final HashMap<String, Integer> codes = new HashMap<>();
+
+    // Code of text, assigning the next one if it is new; -1 if it has none and the dictionary is full
+    int encode(String text) {
+        Integer code = codes.get(text);
+        if (code != null) {
+            return code;
+        }
+        if (size == MAX_SIZE) {
+            return -1;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size] = text;
+        codes.put(text, size);
+        return size++;
+    }
+
+    String decode(int code) {
+        return values[code];
+    }
+
+    // The shared instance of text, encoding it if it is new; text itself once the dictionary is full
+    String intern(String text) {
+        int code = encode(text);
+        return code < 0 ? text : values[code];
+    }
+
+    // The shared instance of text, or null if it has no code
+    String lookup(String text) {
+        Integer code = codes.get(text);
+        return code == null ? null : values[code];
+    }
+}
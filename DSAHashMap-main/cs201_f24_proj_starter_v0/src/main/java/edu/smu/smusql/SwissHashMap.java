@@ -0,0 +1,214 @@
+package edu.smu.smusql;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+// SwissTable-style hash map with the same put/get/remove/size surface as HashMap.
+// Every slot has a control byte: EMPTY, DELETED, or the low 7 bits of the key's hash (its fingerprint).
+// Slots are probed in aligned groups of 8 whose control bytes are read as one long, and all 8
+// fingerprints are compared at once with SWAR bit tricks. Most absent keys are therefore rejected
+// from the control bytes alone, without loading a key or calling equals().
+public class SwissHashMap<K, V> {
+    private static final int GROUP_WIDTH = 8;
+    private static final int INITIAL_CAPACITY = 32; // must be a power of two, at least GROUP_WIDTH
+    private static final byte EMPTY = (byte) 0x80;
+    private static final byte DELETED = (byte) 0xFE;
+    private static final long LSBS = 0x0101010101010101L;
+    private static final long MSBS = 0x8080808080808080L;
+    private static final VarHandle GROUP = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private byte[] ctrl;
+    private Object[] keys;
+    private Object[] values;
+    private int groupMask;
+    private int size;
+    private int growthLeft; // inserts into EMPTY slots allowed before the next rehash (7/8 max load)
+    private int modCount;
+
+    // Constructor to initialize the map
+    public SwissHashMap() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        ctrl = new byte[capacity];
+        Arrays.fill(ctrl, EMPTY);
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        groupMask = capacity / GROUP_WIDTH - 1;
+        growthLeft = capacity - capacity / 8 - size;
+    }
+
+    private static int hash(Object key) {
+        int h = Objects.hashCode(key) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // 7-bit fingerprint stored in the control byte of a full slot
+    private static byte fingerprint(int hash) {
+        return (byte) (hash & 0x7F);
+    }
+
+    // Index of the group where the probe sequence for hash starts
+    private int homeGroup(int hash) {
+        return (hash >>> 7) & groupMask;
+    }
+
+    private long loadGroup(int group) {
+        return (long) GROUP.get(ctrl, group * GROUP_WIDTH);
+    }
+
+    // High bit set in every byte of the group equal to the fingerprint. May report false
+    // positives next to a true match, which the key comparison filters out.
+    private static long matchFingerprint(long group, byte fingerprint) {
+        long x = group ^ (LSBS * (fingerprint & 0xFF));
+        return (x - LSBS) & ~x & MSBS;
+    }
+
+    // High bit set in every EMPTY byte (EMPTY has bit 1 clear, DELETED has it set)
+    private static long matchEmpty(long group) {
+        return group & ~(group << 6) & MSBS;
+    }
+
+    // High bit set in every EMPTY or DELETED byte
+    private static long matchFree(long group) {
+        return group & MSBS;
+    }
+
+    // Slot within its group of the lowest byte flagged in a match mask
+    private static int lowestSlot(long match) {
+        return Long.numberOfTrailingZeros(match) >>> 3;
+    }
+
+    // Returns the slot holding key, or -1 if absent
+    private int findSlot(Object key, int hash) {
+        byte fingerprint = fingerprint(hash);
+        int group = homeGroup(hash);
+        for (int step = 1; ; step++) {
+            long word = loadGroup(group);
+            for (long match = matchFingerprint(word, fingerprint); match != 0; match &= match - 1) {
+                int slot = group * GROUP_WIDTH + lowestSlot(match);
+                if (Objects.equals(keys[slot], key)) {
+                    return slot;
+                }
+            }
+            if (matchEmpty(word) != 0) {
+                return -1; // A probe for key would have stopped here
+            }
+            group = (group + step) & groupMask; // Triangular probing visits every group
+        }
+    }
+
+    // First EMPTY or DELETED slot on the probe sequence for hash
+    private int findFreeSlot(int hash) {
+        int group = homeGroup(hash);
+        for (int step = 1; ; step++) {
+            long free = matchFree(loadGroup(group));
+            if (free != 0) {
+                return group * GROUP_WIDTH + lowestSlot(free);
+            }
+            group = (group + step) & groupMask;
+        }
+    }
+
+    // Put key-value pair into the map
+    public void put(K key, V value) {
+        int hash = hash(key);
+        int slot = findSlot(key, hash);
+        if (slot != -1) {
+            values[slot] = value; // Update value if key exists
+            return;
+        }
+        slot = findFreeSlot(hash);
+        if (ctrl[slot] == EMPTY) {
+            if (growthLeft == 0) {
+                rehash();
+                slot = findFreeSlot(hash);
+            }
+            growthLeft--;
+        }
+        ctrl[slot] = fingerprint(hash);
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        modCount++;
+    }
+
+    // Get value for a given key
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        int slot = findSlot(key, hash(key));
+        return slot == -1 ? null : (V) values[slot];
+    }
+
+    public boolean containsKey(K key) {
+        return findSlot(key, hash(key)) != -1;
+    }
+
+    // Remove key-value pair from the map
+    public void remove(K key) {
+        int slot = findSlot(key, hash(key));
+        if (slot == -1) {
+            return;
+        }
+        // If the slot's group still has an EMPTY byte, every probe through this group already
+        // stops here, so the slot can become EMPTY again instead of leaving a tombstone
+        int group = slot / GROUP_WIDTH;
+        if (matchEmpty(loadGroup(group)) != 0) {
+            ctrl[slot] = EMPTY;
+            growthLeft++;
+        } else {
+            ctrl[slot] = DELETED;
+        }
+        keys[slot] = null;
+        values[slot] = null;
+        size--;
+        modCount++;
+    }
+
+    // Rebuild the table, doubling it unless most of the used slots are tombstones
+    private void rehash() {
+        byte[] oldCtrl = ctrl;
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        int capacity = oldCtrl.length;
+        if (size >= capacity / 2) {
+            capacity *= 2;
+        }
+        allocate(capacity);
+        for (int i = 0; i < oldCtrl.length; i++) {
+            if (oldCtrl[i] >= 0) {
+                int hash = hash(oldKeys[i]);
+                int slot = findFreeSlot(hash);
+                ctrl[slot] = fingerprint(hash);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+        modCount++;
+    }
+
+    // Visit every key-value pair in place
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        int expectedModCount = modCount;
+        for (int i = 0; i < ctrl.length; i++) {
+            if (ctrl[i] >= 0) {
+                action.accept((K) keys[i], (V) values[i]);
+            }
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    // Get the size of the map
+    public int size() {
+        return size;
+    }
+}
@@ -2,18 +2,75 @@ package edu.smu.smusql;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.function.IntConsumer;
+
+public class Table extends Schema {
+    private static final int STATISTICS_SAMPLE = 10_000; // Rows sampled by analyze, a hundred per histogram bucket
+    // Statistics are gathered again once more rows than this plus a tenth of the table have been
+    // inserted, updated or deleted since, the thresholds of PostgreSQL's autovacuum
+    private static final int ANALYZE_THRESHOLD = 50;
 
-public class Table {
     private int primaryKeyCounter = 0;
     public String tableName;
-    public List<String> columnNames;  // Table schema (column names)
-    public HashMap<Integer, Row> rows; // Stores the rows (assuming primary key is an Integer)
+    private final Storage storage;
+    private final boolean converting; // true if values pass through convertValue: some column is typed or encoded
+    private final StringDictionary[] dictionaries; // Of each text column of a row-store table, null elsewhere
+    public RowMap rows; // Stores the rows keyed by the int primary key, without boxing
+    private final OffHeapRowStore offHeapStore; // Row data for OFF_HEAP tables, null otherwise
+    private final HamtRowMap snapshotRows; // Same map as rows for SNAPSHOT tables, null otherwise
+    private final ColumnStore columnStore; // Row data for COLUMNAR tables, null otherwise
+    private int primaryKeyColumn = -1; // Index of the declared PRIMARY KEY column, -1 if none
+    private SwissHashMap<Object, Integer> primaryKeyIndex; // indexKey of each row's key value -> row id
+    private final List<SecondaryIndex> indexes = new ArrayList<>(); // Secondary indexes, in creation order
+    private final ZoneMap zoneMap; // Min/max summaries of each block of row ids
+    private ColumnStatistics[] statistics; // Of each column as of the last analyze, null before it
+    private int analyzedRows; // Row count at the last analyze
+    private int modifications; // Rows inserted, updated or deleted since the last analyze
+
+    // Where row values are kept
+    public enum Storage {
+        HEAP,     // Row objects holding their values on the Java heap
+        OFF_HEAP, // Values in direct buffers; rows is left as an index of small handles
+        SNAPSHOT, // Heap rows in a persistent HamtRowMap, never changed in place, so scans and
+                  // snapshots read a consistent version of the table while writers keep going
+        COLUMNAR  // Values in typed column vectors addressed by row position; rows holds handles
+    }
 
     // Constructor to initialize the table
     public Table(String tableName, List<String> columnNames) {
+        this(tableName, columnNames, Storage.HEAP);
+    }
+
+    public Table(String tableName, List<String> columnNames, Storage storage) {
+        this(tableName, columnNames, null, storage);
+    }
+
+    // columnTypes may be null, or hold null entries, for untyped columns; their values are kept
+    // exactly as given, which for Engine means the raw text of the query
+    public Table(String tableName, List<String> columnNames, List<ColumnType> columnTypes, Storage storage) {
+        super(columnNames, columnTypes);
         this.tableName = tableName;
-        this.columnNames = columnNames;
-        this.rows = new HashMap<>(); // Initial capacity for the HashMap
+        this.storage = storage;
+        this.dictionaries = new StringDictionary[columnNames.size()];
+        if (storage != Storage.COLUMNAR) { // ColumnStore encodes its own VARCHAR vectors
+            for (int column = 0; column < dictionaries.length; column++) {
+                ColumnType type = this.columnTypes.get(column);
+                if (type == null || type == ColumnType.VARCHAR) {
+                    dictionaries[column] = new StringDictionary();
+                }
+            }
+        }
+        this.converting = storage != Storage.COLUMNAR || this.columnTypes.stream().anyMatch(type -> type != null);
+        this.offHeapStore = storage == Storage.OFF_HEAP ? new OffHeapRowStore(this.columnTypes, dictionaries) : null;
+        this.snapshotRows = storage == Storage.SNAPSHOT ? new HamtRowMap() : null;
+        this.columnStore = storage == Storage.COLUMNAR ? new ColumnStore(this.columnTypes) : null;
+        this.zoneMap = new ZoneMap(this.columnTypes);
+        if (snapshotRows != null) {
+            this.rows = snapshotRows;
+        } else {
+            this.rows = new IntRowMap(true); // Incremental resize keeps large inserts free of rehash pauses
+        }
     }
 
     // Row class to store the data for each row
@@ -42,14 +99,210 @@ public class Table {
         }
     }
 
-    // Insert a new row into the table
+    // Make a column the table's primary key: its values must be unique and non-null, and rows can
+    // be found by value through findByPrimaryKey. Rows already in the table are indexed now.
+    public void setPrimaryKey(String columnName) {
+        int columnIndex = columnNames.indexOf(columnName);
+        if (columnIndex == -1) {
+            throw new IllegalArgumentException("No such column: " + columnName);
+        }
+        SwissHashMap<Object, Integer> index = new SwissHashMap<>();
+        rows.forEach((key, row) -> {
+            Object indexKey = indexKey(columnIndex, row.getValue(columnIndex));
+            if (index.containsKey(indexKey)) {
+                throw duplicateKey(row.getValue(columnIndex));
+            }
+            index.put(indexKey, key);
+        });
+        primaryKeyColumn = columnIndex;
+        primaryKeyIndex = index;
+    }
+
+    // Index of the primary key column, or -1 if the table has none
+    public int getPrimaryKeyColumn() {
+        return primaryKeyColumn;
+    }
+
+    // Row id of the row whose primary key equals value (a converted literal or, for an untyped
+    // column, the raw text), or -1 if there is none
+    public int findByPrimaryKey(Object value) {
+        return findByIndexKey(indexKey(primaryKeyColumn, value));
+    }
+
+    // Row id of the row whose primary key value has this index key, or -1 if there is none
+    int findByIndexKey(Object indexKey) {
+        Integer key = primaryKeyIndex.get(indexKey);
+        return key == null ? -1 : key;
+    }
+
+    // Build a secondary index over a column's current values, kept up to date from then on.
+    // Throws IllegalArgumentException for an unknown column or an index name already in use.
+    public SecondaryIndex createIndex(String indexName, String columnName, SecondaryIndex.Type type) {
+        int columnIndex = columnNames.indexOf(columnName);
+        if (columnIndex == -1) {
+            throw new IllegalArgumentException("No such column: " + columnName);
+        }
+        for (SecondaryIndex index : indexes) {
+            if (index.indexName.equals(indexName)) {
+                throw new IllegalArgumentException("Index " + indexName + " already exists on " + tableName);
+            }
+        }
+        SecondaryIndex index;
+        switch (type) {
+            case RANGE:
+                index = new RangeIndex(indexName, columnIndex);
+                break;
+            case BITMAP:
+                index = new BitmapIndex(indexName, columnIndex);
+                break;
+            default:
+                index = new HashIndex(indexName, columnIndex);
+        }
+        rows.forEach((key, row) -> index.add(indexKey(columnIndex, row.getValue(columnIndex)), key));
+        indexes.add(index);
+        return index;
+    }
+
+    // First secondary index of either type on a column, or null if the column has none
+    public SecondaryIndex getIndex(int columnIndex) {
+        for (SecondaryIndex index : indexes) {
+            if (index.columnIndex == columnIndex) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    // First RANGE index on a column, or null if the column has none
+    public RangeIndex getRangeIndex(int columnIndex) {
+        for (SecondaryIndex index : indexes) {
+            if (index.columnIndex == columnIndex && index instanceof RangeIndex) {
+                return (RangeIndex) index;
+            }
+        }
+        return null;
+    }
+
+    // First BITMAP index on a column, or null if the column has none
+    public BitmapIndex getBitmapIndex(int columnIndex) {
+        for (SecondaryIndex index : indexes) {
+            if (index.columnIndex == columnIndex && index instanceof BitmapIndex) {
+                return (BitmapIndex) index;
+            }
+        }
+        return null;
+    }
+
+    // Rows whose value in a BITMAP-indexed column meets one WHERE condition, the union of the
+    // bitmaps of the distinct values that meet it; literal as from convertLiteral. null if the
+    // index cannot answer the condition (see findRange).
+    public RoaringBitmap findBitmap(BitmapIndex index, String[] condition, Object literal) {
+        int columnIndex = index.columnIndex;
+        if (condition[1].equals("LIKE")) {
+            return null; // A pattern may match keys anywhere in the order
+        }
+        Object value = literal != null ? literal : condition[2];
+        if (condition[1].equals("=")) {
+            return index.find(indexKey(columnIndex, value));
+        }
+        // Bounds for numeric and for text keys, the way WHERE compares each kind
+        Object number = null;
+        Object text = null;
+        if (columnTypes.get(columnIndex) == null) {
+            number = indexKey(columnIndex, value);
+            if (!(number instanceof Double)) {
+                return null;
+            }
+            text = value;
+        } else if (value instanceof Double) {
+            number = value;
+        } else {
+            text = value;
+        }
+        Object numberBound = number;
+        Object textBound = text;
+        return index.findAll(key -> {
+            Object bound = key instanceof Double ? numberBound : textBound;
+            return bound != null && Engine.compareResult(RangeIndex.compareKeys(key, bound), condition[1]);
+        });
+    }
+
+    // Visit, in ascending order of value, the ids of the rows meeting every WHERE condition on a
+    // RANGE-indexed column; literals as from convertLiteral. Conditions on other columns are left
+    // to the caller. Returns false without visiting anything if the index cannot answer a
+    // condition: an untyped column compares its numbers as text against a non-numeric literal.
+    public boolean findRange(RangeIndex index, List<String[]> conditions, Object[] literals, IntConsumer action) {
+        String column = columnNames.get(index.columnIndex);
+        boolean untyped = columnTypes.get(index.columnIndex) == null;
+        // Numeric keys run from -Infinity up to NaN, the largest double in Double.compare order;
+        // text keys sort after them
+        RangeIndex.Range numbers = new RangeIndex.Range(Double.NEGATIVE_INFINITY, Double.NaN);
+        RangeIndex.Range text = new RangeIndex.Range("", null);
+        for (int i = 0; i < conditions.size(); i++) {
+            String[] condition = conditions.get(i);
+            if (!condition[0].equals(column) || condition[1].equals("LIKE")) {
+                continue; // LIKE conditions are left to the caller too
+            }
+            if (untyped) {
+                // Numeric text compares with numbers as a number and with other text as text
+                Object number = indexKey(index.columnIndex, condition[2]);
+                if (!(number instanceof Double)) {
+                    return false;
+                }
+                numbers.restrict(condition[1], number);
+                text.restrict(condition[1], condition[2]);
+            } else {
+                (literals[i] instanceof Double ? numbers : text).restrict(condition[1], literals[i]);
+            }
+        }
+        index.forEachInRange(numbers, action);
+        index.forEachInRange(text, action);
+        return true;
+    }
+
+    private IllegalArgumentException duplicateKey(Object value) {
+        return new IllegalArgumentException("Duplicate primary key: " + value);
+    }
+
+    // Index key of the primary key among values, checked to be free for the row primaryKey
+    // (0 for a new row); null if the table has no primary key
+    private Object claimPrimaryKey(List<Object> values, int primaryKey) {
+        if (primaryKeyIndex == null) {
+            return null;
+        }
+        Object indexKey = indexKey(primaryKeyColumn, values.get(primaryKeyColumn));
+        Integer owner = primaryKeyIndex.get(indexKey);
+        if (owner != null && owner != primaryKey) {
+            throw duplicateKey(values.get(primaryKeyColumn));
+        }
+        return indexKey;
+    }
+
+    // Insert a new row into the table; values of typed columns are converted first
     public void insertRow(ArrayList<Object> values) {
         if (values.size() != columnNames.size()) {
             throw new IllegalArgumentException("Number of values doesn't match the schema");
         }
+        values = convertValues(values);
+        Object indexKey = claimPrimaryKey(values, 0); // Row ids start at 1
         primaryKeyCounter++;
-        Row row = new Row(values);
+        Row row;
+        if (offHeapStore != null) {
+            row = offHeapStore.insert(values);
+        } else if (columnStore != null) {
+            row = columnStore.insert(primaryKeyCounter, values);
+        } else {
+            row = new Row(values);
+        }
         rows.put(primaryKeyCounter, row); // Store row in the hash map by primary key
+        if (indexKey != null) {
+            primaryKeyIndex.put(indexKey, primaryKeyCounter);
+        }
+        for (SecondaryIndex index : indexes) {
+            index.add(indexKey(index.columnIndex, values.get(index.columnIndex)), primaryKeyCounter);
+        }
+        zoneMap.insert(primaryKeyCounter, values);
+        modifications++;
     }
 
     // Select a row by primary key
@@ -62,21 +315,191 @@ public class Table {
         if (newValues.size() != columnNames.size()) {
             throw new IllegalArgumentException("Number of values doesn't match the schema");
         }
+        newValues = convertValues(newValues);
         Row row = rows.get(primaryKey);
-        if (row != null) {
+        if (row == null) {
+            return;
+        }
+        Object indexKey = claimPrimaryKey(newValues, primaryKey);
+        if (indexKey != null) {
+            primaryKeyIndex.remove(indexKey(primaryKeyColumn, row.getValue(primaryKeyColumn)));
+            primaryKeyIndex.put(indexKey, primaryKey);
+        }
+        for (SecondaryIndex index : indexes) {
+            index.remove(indexKey(index.columnIndex, row.getValue(index.columnIndex)), primaryKey);
+            index.add(indexKey(index.columnIndex, newValues.get(index.columnIndex)), primaryKey);
+        }
+        for (int i = 0; i < newValues.size(); i++) {
+            zoneMap.update(primaryKey, i, newValues.get(i));
+        }
+        modifications++;
+        if (offHeapStore != null || columnStore != null) {
+            for (int i = 0; i < newValues.size(); i++) {
+                row.setValue(i, newValues.get(i)); // Written through to the row's slot or position
+            }
+        } else {
             row = new Row(newValues);  // Replace with new values
             rows.put(primaryKey, row); // Update the row in the map
         }
     }
 
+    // Set one column of a row found by a scan to a value already passed through convertValue.
+    // SNAPSHOT tables get an updated copy of the row instead, so snapshots and scans that already
+    // hold the old row keep seeing its old values.
+    // Throws IllegalArgumentException, leaving the row as it was, if value would duplicate the
+    // primary key of another row.
+    public void updateValue(int primaryKey, Row row, int columnIndex, Object value) {
+        if (columnIndex == primaryKeyColumn) {
+            Object indexKey = indexKey(columnIndex, value);
+            Integer owner = primaryKeyIndex.get(indexKey);
+            if (owner != null && owner != primaryKey) {
+                throw duplicateKey(value);
+            }
+            primaryKeyIndex.remove(indexKey(columnIndex, row.getValue(columnIndex)));
+            primaryKeyIndex.put(indexKey, primaryKey);
+        }
+        for (SecondaryIndex index : indexes) {
+            if (index.columnIndex == columnIndex) {
+                index.remove(indexKey(columnIndex, row.getValue(columnIndex)), primaryKey);
+                index.add(indexKey(columnIndex, value), primaryKey);
+            }
+        }
+        zoneMap.update(primaryKey, columnIndex, value);
+        modifications++;
+        if (snapshotRows != null) {
+            Row copy = new Row(new ArrayList<>(row.getValues()));
+            copy.setValue(columnIndex, value);
+            rows.put(primaryKey, copy);
+        } else {
+            row.setValue(columnIndex, value);
+        }
+    }
+
+    // Native form of a value for a column: parsed to Integer, Long or Double, or unquoted for
+    // VARCHAR. Values of untyped columns are returned as they are. Text of a row-store table comes
+    // back as its column dictionary's shared instance (see StringDictionary).
+    public Object convertValue(int columnIndex, Object value) {
+        ColumnType type = columnTypes.get(columnIndex);
+        if (type != null) {
+            try {
+                value = type.convert(value);
+            } catch (IllegalArgumentException e) {
+                throw invalidValue(columnIndex, value);
+            }
+        }
+        StringDictionary dictionary = dictionaries[columnIndex];
+        return dictionary != null && value instanceof String ? dictionary.intern((String) value) : value;
+    }
+
+    // The shared instance of text in a row-store text column's dictionary, or null if the column
+    // has no dictionary or text no code there
+    @Override
+    String sharedText(int columnIndex, String text) {
+        StringDictionary dictionary = dictionaries[columnIndex];
+        return dictionary == null ? null : dictionary.lookup(text);
+    }
+
+    private ArrayList<Object> convertValues(ArrayList<Object> values) {
+        if (!converting) {
+            return values;
+        }
+        ArrayList<Object> converted = new ArrayList<>(values.size());
+        for (int i = 0; i < values.size(); i++) {
+            converted.add(convertValue(i, values.get(i)));
+        }
+        return converted;
+    }
+
     // Delete a row by primary key
     public void deleteRow(int primaryKey) {
-        rows.remove(primaryKey);  // Remove row from the hash map
+        Row row = rows.remove(primaryKey);  // Remove row from the hash map
+        if (row != null) {
+            freeStorage(primaryKey, row);
+        }
+    }
+
+    // Delete the row a scan cursor over rows is positioned on
+    public void deleteRow(RowMap.Cursor cursor) {
+        int primaryKey = cursor.key();
+        Row row = cursor.row();
+        cursor.remove();
+        freeStorage(primaryKey, row);
+    }
+
+    // Give a deleted row's off-heap slot or column position back for reuse, and drop it from the
+    // primary key and secondary indexes and its zone map block's row count
+    private void freeStorage(int primaryKey, Row row) {
+        if (primaryKeyIndex != null) {
+            primaryKeyIndex.remove(indexKey(primaryKeyColumn, row.getValue(primaryKeyColumn)));
+        }
+        for (SecondaryIndex index : indexes) {
+            index.remove(indexKey(index.columnIndex, row.getValue(index.columnIndex)), primaryKey);
+        }
+        zoneMap.delete(primaryKey);
+        modifications++;
+        if (offHeapStore != null) {
+            offHeapStore.free(row);
+        } else if (columnStore != null) {
+            columnStore.free(row);
+        }
+    }
+
+    // Gather the statistics of every column from a random sample of at most STATISTICS_SAMPLE rows
+    // (ANALYZE tableName)
+    public void analyze() {
+        Random random = new Random(STATISTICS_SAMPLE); // Fixed seed: the same table gets the same plans
+        Row[] sample = new Row[Math.min(rows.size(), STATISTICS_SAMPLE)];
+        int[] seen = {0};
+        rows.forEach((key, row) -> {
+            // Reservoir sampling: the i-th row replaces a sampled one with probability n / i
+            int slot = seen[0] < sample.length ? seen[0] : random.nextInt(seen[0] + 1);
+            if (slot < sample.length) {
+                sample[slot] = row;
+            }
+            seen[0]++;
+        });
+        ColumnStatistics[] columns = new ColumnStatistics[columnNames.size()];
+        for (int column = 0; column < columns.length; column++) {
+            Object[] keys = new Object[Math.min(seen[0], sample.length)];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = indexKey(column, sample[i].getValue(column));
+            }
+            columns[column] = new ColumnStatistics(keys, seen[0]);
+        }
+        statistics = columns;
+        analyzedRows = seen[0];
+        modifications = 0;
+    }
+
+    // Statistics of a column, analyzing the table first if it never was or has changed too much
+    // since (see ANALYZE_THRESHOLD)
+    public ColumnStatistics getStatistics(int columnIndex) {
+        if (statistics == null || modifications > ANALYZE_THRESHOLD + analyzedRows / 10) {
+            analyze();
+        }
+        return statistics[columnIndex];
+    }
+
+    public ZoneMap getZoneMap() {
+        return zoneMap;
     }
 
-    // Get the column names (schema)
-    public List<String> getColumnNames() {
-        return columnNames;
+    public boolean isColumnar() {
+        return columnStore != null;
+    }
+
+    // Keys and rows of a COLUMNAR table's rows meeting every WHERE condition, filtered a column at
+    // a time; literals as from convertLiteral
+    ParallelScan.Matches filterColumns(List<String[]> conditions, Object[] literals) {
+        return columnStore.filter(conditions, literals, columnNames);
+    }
+
+    // Immutable view of a SNAPSHOT table's rows as they are now, taken in O(1)
+    public RowMap snapshot() {
+        if (snapshotRows == null) {
+            throw new IllegalStateException("Table " + tableName + " uses " + storage + " storage, not SNAPSHOT");
+        }
+        return snapshotRows.snapshot();
     }
 
 }
@@ -0,0 +1,192 @@
+package edu.smu.smusql;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Min/max summaries of a table's rows in fixed-size blocks of row ids, which Table hands out in
+// insert order, so a block is a run of rows inserted together. Per block and column it keeps the
+// range of the numeric values (by Double.compare) and of the values' text (by String.compareTo),
+// and how many values are not numeric; a scan can skip every block whose ranges rule out the
+// WHERE clause.
+// Summaries only widen: updates extend them and deletes leave them alone, so a block is never
+// skipped wrongly, merely scanned when it no longer needs to be. A block's live row count does
+// drop on delete, and empty blocks are always skipped.
+public class ZoneMap {
+    static final int BLOCK_SIZE = 1024; // row ids per block
+
+    private final List<ColumnType> columnTypes;
+    private int blocks; // blocks in use
+    private int[] rowCounts = new int[16]; // live rows per block
+    private final double[][] numberMin, numberMax; // [column][block], for blocks with numbers
+    private final int[][] numberCounts; // [column][block] numeric values written
+    private final String[][] textMin, textMax; // [column][block] range of the values' text
+    private final int[][] otherCounts; // [column][block] non-numeric values written
+
+    ZoneMap(List<ColumnType> columnTypes) {
+        this.columnTypes = columnTypes;
+        int columns = columnTypes.size();
+        numberMin = new double[columns][16];
+        numberMax = new double[columns][16];
+        numberCounts = new int[columns][16];
+        textMin = new String[columns][16];
+        textMax = new String[columns][16];
+        otherCounts = new int[columns][16];
+    }
+
+    public int blockCount() {
+        return blocks;
+    }
+
+    // Row ids of a block run from firstRowId(block) to firstRowId(block + 1) - 1
+    public static int firstRowId(int block) {
+        return block * BLOCK_SIZE;
+    }
+
+    // Count a new row and widen its block's summaries to its values
+    void insert(int rowId, List<Object> values) {
+        int block = rowId / BLOCK_SIZE;
+        if (block >= blocks) {
+            grow(block + 1);
+        }
+        rowCounts[block]++;
+        for (int column = 0; column < values.size(); column++) {
+            widen(block, column, values.get(column));
+        }
+    }
+
+    // Widen the summaries of a row's block to a value written to one of its columns
+    void update(int rowId, int column, Object value) {
+        widen(rowId / BLOCK_SIZE, column, value);
+    }
+
+    void delete(int rowId) {
+        rowCounts[rowId / BLOCK_SIZE]--;
+    }
+
+    private void grow(int needed) {
+        if (needed > rowCounts.length) {
+            int capacity = Math.max(needed, rowCounts.length * 2);
+            rowCounts = Arrays.copyOf(rowCounts, capacity);
+            for (int column = 0; column < numberMin.length; column++) {
+                numberMin[column] = Arrays.copyOf(numberMin[column], capacity);
+                numberMax[column] = Arrays.copyOf(numberMax[column], capacity);
+                numberCounts[column] = Arrays.copyOf(numberCounts[column], capacity);
+                textMin[column] = Arrays.copyOf(textMin[column], capacity);
+                textMax[column] = Arrays.copyOf(textMax[column], capacity);
+                otherCounts[column] = Arrays.copyOf(otherCounts[column], capacity);
+            }
+        }
+        blocks = needed;
+    }
+
+    private void widen(int block, int column, Object value) {
+        Double number = value instanceof Number ? (Double) ((Number) value).doubleValue() : null;
+        if (value instanceof String) {
+            String text = (String) value;
+            if (columnTypes.get(column) == null) {
+                number = RowPredicate.parseNumber(text); // Untyped text compares as a number when it is one
+            }
+            if (textMin[column][block] == null || text.compareTo(textMin[column][block]) < 0) {
+                textMin[column][block] = text;
+            }
+            if (textMax[column][block] == null || text.compareTo(textMax[column][block]) > 0) {
+                textMax[column][block] = text;
+            }
+        }
+        if (number == null) {
+            otherCounts[column][block]++;
+            return;
+        }
+        double d = number;
+        if (numberCounts[column][block]++ == 0) {
+            numberMin[column][block] = d;
+            numberMax[column][block] = d;
+        } else {
+            if (Double.compare(d, numberMin[column][block]) < 0) {
+                numberMin[column][block] = d;
+            }
+            if (Double.compare(d, numberMax[column][block]) > 0) {
+                numberMax[column][block] = d;
+            }
+        }
+    }
+
+    // For each block, whether it may hold a row meeting the conditions (as parsed by Engine, in
+    // OR-groups of ANDed conditions); literals as from Table.convertLiteral. null if a condition
+    // names an unknown column.
+    boolean[] candidateBlocks(List<String[]> conditions, Object[] literals, List<String> columnNames) {
+        int[] columns = new int[conditions.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = columnNames.indexOf(conditions.get(i)[0]);
+            if (columns[i] == -1) {
+                return null;
+            }
+        }
+        boolean[] candidates = new boolean[blocks];
+        for (int block = 0; block < blocks; block++) {
+            if (rowCounts[block] == 0) {
+                continue;
+            }
+            boolean group = true; // Current OR-group may match
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0 && Engine.startsOrGroup(conditions.get(i))) {
+                    if (group) {
+                        break;
+                    }
+                    group = true;
+                } else if (!group) {
+                    continue;
+                }
+                String[] condition = conditions.get(i);
+                group = mayMatch(block, columns[i], condition[1], literals[i], condition[2]);
+            }
+            candidates[block] = group;
+        }
+        return candidates;
+    }
+
+    // Whether some value in the block's ranges for a column could meet "value operator literal".
+    // Numbers are tested against the literal as a number, other text against it as text; an
+    // untyped column compares numbers with non-numeric literals as text too.
+    private boolean mayMatch(int block, int column, String operator, Object literal, String text) {
+        if (operator.equals("LIKE")) {
+            return true; // A pattern may match values anywhere in the order
+        }
+        boolean hasNumbers = numberCounts[column][block] > 0;
+        if (literal instanceof Double) {
+            return hasNumbers && mayMatch(numberMin[column][block], numberMax[column][block], operator, (Double) literal);
+        }
+        if (literal instanceof String) {
+            return textMin[column][block] != null
+                    && mayMatch(textMin[column][block], textMax[column][block], operator, (String) literal);
+        }
+        Double number = RowPredicate.parseNumber(text);
+        if (number == null) {
+            return textMin[column][block] != null
+                    && mayMatch(textMin[column][block], textMax[column][block], operator, text);
+        }
+        return (hasNumbers && mayMatch(numberMin[column][block], numberMax[column][block], operator, number))
+                || (otherCounts[column][block] > 0
+                        && mayMatch(textMin[column][block], textMax[column][block], operator, text));
+    }
+
+    private static boolean mayMatch(double min, double max, String operator, double literal) {
+        return mayMatch(Double.compare(min, literal), Double.compare(max, literal), operator);
+    }
+
+    private static boolean mayMatch(String min, String max, String operator, String literal) {
+        return mayMatch(min.compareTo(literal), max.compareTo(literal), operator);
+    }
+
+    // Given how the range's ends compare with the literal
+    private static boolean mayMatch(int minComparison, int maxComparison, String operator) {
+        switch (operator) {
+            case "=": return minComparison <= 0 && maxComparison >= 0;
+            case ">": return maxComparison > 0;
+            case ">=": return maxComparison >= 0;
+            case "<": return minComparison < 0;
+            case "<=": return minComparison <= 0;
+            default: return true;
+        }
+    }
+}
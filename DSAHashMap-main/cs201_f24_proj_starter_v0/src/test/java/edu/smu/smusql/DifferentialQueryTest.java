@@ -0,0 +1,266 @@
+package edu.smu.smusql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+// Random tables, WHERE clauses and writes checked against a brute-force reference that keeps the
+// rows in a list and evaluates every condition itself. Every storage runs typed and untyped, with
+// no index, with each kind of index on the filtered columns, and with a primary key, so scans,
+// index lookups, zone maps and the planner's choices all answer the same queries.
+class DifferentialQueryTest {
+    private static final String[] STORAGES = {"HEAP", "OFF_HEAP", "SNAPSHOT", "COLUMNAR"};
+    private static final String[] WORDS = {"ant", "bee", "cat", "cow", "dog", "eel", "elk", "fox", "gnu", "hen"};
+    private static final String[] OPERATORS = {"=", "<", ">", "<=", ">="};
+    private static final String[][] INDEXES = {
+            {},
+            {"CREATE INDEX t_a ON t (a)", "CREATE INDEX t_b ON t (b) USING RANGE", "CREATE INDEX t_c ON t (c) USING BITMAP"},
+            {"CREATE INDEX t_a ON t (a) USING BITMAP", "CREATE INDEX t_b ON t (b)", "CREATE INDEX t_c ON t (c) USING RANGE"},
+    };
+
+    // One row of the reference: b holds halves, so its text is exact
+    private static final class Row {
+        final int id;
+        int a;
+        double b;
+        String c;
+
+        Row(int id, int a, double b, String c) {
+            this.id = id;
+            this.a = a;
+            this.b = b;
+            this.c = c;
+        }
+    }
+
+    @Test
+    void queriesMatchReference() {
+        for (String storage : STORAGES) {
+            for (boolean typed : new boolean[] {false, true}) {
+                for (int indexes = 0; indexes <= INDEXES.length; indexes++) {
+                    for (int seed = 0; seed < 3; seed++) {
+                        String context = storage + (typed ? " typed" : " untyped")
+                                + (indexes == INDEXES.length ? " primary key" : " indexes " + indexes) + " seed " + seed;
+                        run(new Random(seed), storage, typed, indexes, 300, 150, context);
+                    }
+                }
+            }
+        }
+    }
+
+    // Enough rows for the parallel scans and zone map blocks of large tables
+    @Test
+    void largeTableQueriesMatchReference() {
+        run(new Random(7), "HEAP", false, 0, 60_000, 12, "large HEAP untyped");
+        run(new Random(8), "COLUMNAR", true, 1, 60_000, 12, "large COLUMNAR typed");
+    }
+
+    private static void run(Random random, String storage, boolean typed, int indexes, int rows, int operations,
+                            String context) {
+        Engine engine = new Engine();
+        boolean primaryKey = indexes == INDEXES.length;
+        String columns = typed
+                ? "id INT" + (primaryKey ? " PRIMARY KEY" : "") + ", a INT, b DOUBLE, c VARCHAR"
+                : "id" + (primaryKey ? " PRIMARY KEY" : "") + ", a, b, c";
+        assertEquals("Table t created.", engine.executeSQL("CREATE TABLE t (" + columns + ") STORAGE " + storage), context);
+        if (!primaryKey) {
+            for (String index : INDEXES[indexes]) {
+                assertEquals(true, engine.executeSQL(index).endsWith("created."), context + " " + index);
+            }
+        }
+        List<Row> reference = new ArrayList<>();
+        int nextId = 0;
+        for (; nextId < rows; nextId++) {
+            insert(engine, reference, random, nextId, context);
+        }
+        for (int op = 0; op < operations; op++) {
+            String where = randomWhere(random, nextId);
+            Predicate<Row> matches = reference(where);
+            String query = context + ": " + where;
+            switch (random.nextInt(7)) {
+                case 0:
+                    insert(engine, reference, random, nextId++, context);
+                    break;
+                case 1: {
+                    int a = random.nextInt(50);
+                    int expected = 0;
+                    for (Row row : reference) {
+                        if (matches.test(row)) {
+                            row.a = a;
+                            expected++;
+                        }
+                    }
+                    assertEquals("Updated " + expected + " rows in t", engine.executeSQL("UPDATE t SET a = " + a + " WHERE " + where), query);
+                    break;
+                }
+                case 2: {
+                    String c = WORDS[random.nextInt(WORDS.length)];
+                    int expected = 0;
+                    for (Row row : reference) {
+                        if (matches.test(row)) {
+                            row.c = c;
+                            expected++;
+                        }
+                    }
+                    assertEquals("Updated " + expected + " rows in t", engine.executeSQL("UPDATE t SET c = '" + c + "' WHERE " + where), query);
+                    break;
+                }
+                case 3: {
+                    int before = reference.size();
+                    reference.removeIf(matches);
+                    assertEquals("Deleted " + (before - reference.size()) + " rows from t", engine.executeSQL("DELETE FROM t WHERE " + where), query);
+                    break;
+                }
+                case 4:
+                    checkAggregates(engine, reference, where, matches, query);
+                    break;
+                default:
+                    checkSelect(engine, reference, where, matches, query);
+                    break;
+            }
+        }
+        checkSelect(engine, reference, "id >= 0", reference("id >= 0"), context + " final");
+    }
+
+    private static void insert(Engine engine, List<Row> reference, Random random, int id, String context) {
+        Row row = new Row(id, random.nextInt(50), random.nextInt(200) / 2.0, WORDS[random.nextInt(WORDS.length)]);
+        reference.add(row);
+        assertEquals("Row inserted into t",
+                engine.executeSQL("INSERT INTO t VALUES (" + id + ", " + row.a + ", " + row.b + ", '" + row.c + "')"), context);
+    }
+
+    private static void checkSelect(Engine engine, List<Row> reference, String where, Predicate<Row> matches,
+                                    String context) {
+        Set<Integer> expected = new TreeSet<>();
+        for (Row row : reference) {
+            if (matches.test(row)) {
+                expected.add(row.id);
+            }
+        }
+        Set<Integer> actual = new TreeSet<>();
+        ResultSet result = engine.query("SELECT * FROM t WHERE " + where);
+        while (result.next()) {
+            assertEquals(true, actual.add((int) result.getLong(0)), context + " repeats a row");
+        }
+        assertEquals(expected, actual, context);
+    }
+
+    // COUNT, SUM, MIN and MAX of a per value of c, and the COUNT of the whole selection
+    private static void checkAggregates(Engine engine, List<Row> reference, String where, Predicate<Row> matches,
+                                    String context) {
+        Map<String, List<Long>> expected = new TreeMap<>();
+        long count = 0;
+        for (Row row : reference) {
+            if (matches.test(row)) {
+                count++;
+                List<Long> group = expected.computeIfAbsent(row.c, c -> new ArrayList<>(List.of(0L, 0L, Long.MAX_VALUE, Long.MIN_VALUE)));
+                group.set(0, group.get(0) + 1);
+                group.set(1, group.get(1) + row.a);
+                group.set(2, Math.min(group.get(2), row.a));
+                group.set(3, Math.max(group.get(3), row.a));
+            }
+        }
+        Map<String, List<Long>> actual = new TreeMap<>();
+        ResultSet result = engine.query("SELECT c, COUNT(*), SUM(a), MIN(a), MAX(a) FROM t WHERE " + where + " GROUP BY c");
+        while (result.next()) {
+            List<Long> group = new ArrayList<>();
+            for (int column = 1; column <= 4; column++) {
+                group.add((long) result.getDouble(column));
+            }
+            String c = result.getString(0);
+            assertEquals(null, actual.put(c.startsWith("'") ? c.substring(1, c.length() - 1) : c, group), context + " repeats a group");
+        }
+        assertEquals(expected, actual, context);
+        ResultSet total = engine.query("SELECT COUNT(*) FROM t WHERE " + where);
+        assertEquals(true, total.next(), context);
+        assertEquals(count, total.getLong(0), context);
+    }
+
+    // One to three OR-groups of one or two ANDed conditions, few enough that most clauses match rows
+    private static String randomWhere(Random random, int ids) {
+        StringBuilder where = new StringBuilder();
+        int groups = 1 + random.nextInt(3);
+        for (int g = 0; g < groups; g++) {
+            int conditions = 1 + random.nextInt(2);
+            for (int i = 0; i < conditions; i++) {
+                if (where.length() > 0) {
+                    where.append(i == 0 ? " OR " : " AND ");
+                }
+                where.append(randomCondition(random, ids));
+            }
+        }
+        return where.toString();
+    }
+
+    private static String randomCondition(Random random, int ids) {
+        String operator = OPERATORS[random.nextInt(OPERATORS.length)];
+        switch (random.nextInt(5)) {
+            case 0:
+                return "id " + operator + " " + random.nextInt(ids + 1);
+            case 1:
+                return "a " + operator + " " + random.nextInt(50);
+            case 2:
+                return "b " + operator + " " + random.nextInt(200) / 2.0;
+            case 3:
+                return "c " + operator + " '" + WORDS[random.nextInt(WORDS.length)] + "'";
+            default:
+                String word = WORDS[random.nextInt(WORDS.length)];
+                return "c LIKE '" + (random.nextBoolean() ? word.charAt(0) + "%" : "_" + word.charAt(1) + "%") + "'";
+        }
+    }
+
+    // The WHERE clause as a test of reference rows: AND binds tighter than OR
+    private static Predicate<Row> reference(String where) {
+        Predicate<Row> any = row -> false;
+        for (String group : where.split(" OR ")) {
+            Predicate<Row> all = row -> true;
+            for (String condition : group.split(" AND ")) {
+                all = all.and(condition(condition.split(" ", 3)));
+            }
+            any = any.or(all);
+        }
+        return any;
+    }
+
+    private static Predicate<Row> condition(String[] condition) {
+        String literal = condition[2];
+        if (condition[1].equals("LIKE")) {
+            Pattern pattern = Pattern.compile(literal.substring(1, literal.length() - 1).replace("%", ".*").replace("_", "."));
+            return row -> pattern.matcher(row.c).matches();
+        }
+        return row -> accepts(condition[1], compare(row, condition[0], literal));
+    }
+
+    private static int compare(Row row, String column, String literal) {
+        switch (column) {
+            case "id":
+                return Integer.compare(row.id, Integer.parseInt(literal));
+            case "a":
+                return Integer.compare(row.a, Integer.parseInt(literal));
+            case "b":
+                return Double.compare(row.b, Double.parseDouble(literal));
+            default:
+                return row.c.compareTo(literal.substring(1, literal.length() - 1));
+        }
+    }
+
+    private static boolean accepts(String operator, int comparison) {
+        switch (operator) {
+            case "=": return comparison == 0;
+            case "<": return comparison < 0;
+            case ">": return comparison > 0;
+            case "<=": return comparison <= 0;
+            default: return comparison >= 0;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package edu.smu.smusql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+// Randomized checks of the hash maps against java.util.HashMap. Small capacities, a narrow key
+// range and keys homed in the last buckets keep clusters long and resizes frequent, so operations
+// regularly land in the middle of an incremental resize and on clusters that wrap around the end
+// of the bucket array.
+class HashMapTest {
+    private static final int SEEDS = 100;
+    private static final int OPERATIONS = 3000;
+
+    // Keys homed in the last eight buckets of any capacity up to 1024
+    private static final int[] TOP_KEYS = topKeys(key -> HashMap.hash(key));
+    private static final int[] TOP_ROW_KEYS = topKeys(IntRowMap::mix);
+
+    private static int[] topKeys(IntUnaryOperator hash) {
+        List<Integer> keys = new ArrayList<>();
+        for (int key = 0; keys.size() < 200; key++) {
+            if ((hash.applyAsInt(key) & 1023) >= 1016) {
+                keys.add(key);
+            }
+        }
+        return keys.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // A third of the keys come from topKeys
+    private static int nextKey(Random random, int keyRange, int[] topKeys) {
+        if (random.nextInt(3) == 0) {
+            return topKeys[random.nextInt(keyRange) % topKeys.length];
+        }
+        return random.nextInt(keyRange) - keyRange / 4;
+    }
+
+    @Test
+    void hashMapMatchesReference() {
+        for (int seed = 0; seed < SEEDS; seed++) {
+            for (boolean incremental : new boolean[] {false, true}) {
+                Random random = new Random(seed);
+                float loadFactor = 0.5f + random.nextInt(45) / 100f;
+                HashMap<Integer, Integer> map = new HashMap<>(1 + random.nextInt(64), loadFactor, incremental);
+                Map<Integer, Integer> reference = new java.util.HashMap<>();
+                int keyRange = 16 + random.nextInt(400);
+                String context = "seed " + seed + (incremental ? " incremental" : "");
+                for (int op = 0; op < OPERATIONS; op++) {
+                    int key = nextKey(random, keyRange, TOP_KEYS);
+                    int choice = random.nextInt(10);
+                    if (choice < 5) {
+                        map.put(key, op);
+                        reference.put(key, op);
+                    } else if (choice < 7) {
+                        map.remove(key);
+                        reference.remove(key);
+                    } else {
+                        assertEquals(reference.get(key), map.get(key), context);
+                    }
+                    assertEquals(reference.size(), map.size(), context);
+                    if (random.nextInt(100) == 0) {
+                        checkEntries(map, reference, random.nextInt(3), context);
+                    }
+                }
+                checkEntries(map, reference, 0, context);
+            }
+        }
+    }
+
+    // Walk the entries, removing through the iterator those whose key is congruent to
+    // removeResidue mod 3 (none when it is 0)
+    private static void checkEntries(HashMap<Integer, Integer> map, Map<Integer, Integer> reference,
+                                     int removeResidue, String context) {
+        Map<Integer, Integer> seen = new java.util.HashMap<>();
+        var iterator = map.entrySet().iterator();
+        while (iterator.hasNext()) {
+            HashMap.Entry<Integer, Integer> entry = iterator.next();
+            assertEquals(null, seen.put(entry.getKey(), entry.getValue()), context + " visited twice");
+            if (removeResidue != 0 && Math.floorMod(entry.getKey(), 3) == removeResidue) {
+                iterator.remove();
+            }
+        }
+        assertEquals(reference, seen, context);
+        if (removeResidue != 0) {
+            reference.keySet().removeIf(key -> Math.floorMod(key, 3) == removeResidue);
+        }
+        assertEquals(reference.size(), map.size(), context);
+        for (Map.Entry<Integer, Integer> entry : reference.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()), context);
+        }
+    }
+
+    @Test
+    void intRowMapMatchesReference() {
+        checkRowMap(() -> new IntRowMap(false), "IntRowMap");
+        checkRowMap(() -> new IntRowMap(true), "IntRowMap incremental");
+    }
+
+    @Test
+    void hamtRowMapMatchesReference() {
+        checkRowMap(HamtRowMap::new, "HamtRowMap");
+    }
+
+    private static void checkRowMap(Supplier<RowMap> factory, String name) {
+        for (int seed = 0; seed < SEEDS; seed++) {
+            Random random = new Random(seed);
+            RowMap map = factory.get();
+            Map<Integer, Table.Row> reference = new java.util.HashMap<>();
+            int keyRange = 16 + random.nextInt(400);
+            String context = name + " seed " + seed;
+            for (int op = 0; op < OPERATIONS; op++) {
+                int key = nextKey(random, keyRange, TOP_ROW_KEYS);
+                int choice = random.nextInt(10);
+                if (choice < 5) {
+                    Table.Row row = new Table.Row(new ArrayList<>());
+                    map.put(key, row);
+                    reference.put(key, row);
+                } else if (choice < 7) {
+                    assertSame(reference.remove(key), map.remove(key), context);
+                } else {
+                    assertSame(reference.get(key), map.get(key), context);
+                    assertEquals(reference.containsKey(key), map.containsKey(key), context);
+                }
+                assertEquals(reference.size(), map.size(), context);
+                if (random.nextInt(100) == 0) {
+                    checkRows(map, reference, random.nextInt(3), context);
+                }
+            }
+            checkRows(map, reference, 0, context);
+        }
+    }
+
+    // Walk the rows with a cursor, removing those whose key is congruent to removeResidue mod 3
+    // (none when it is 0)
+    private static void checkRows(RowMap map, Map<Integer, Table.Row> reference, int removeResidue, String context) {
+        Map<Integer, Table.Row> seen = new java.util.HashMap<>();
+        RowMap.Cursor cursor = map.cursor();
+        while (cursor.next()) {
+            assertEquals(null, seen.put(cursor.key(), cursor.row()), context + " visited twice");
+            if (removeResidue != 0 && Math.floorMod(cursor.key(), 3) == removeResidue) {
+                cursor.remove();
+            }
+        }
+        assertEquals(reference, seen, context);
+        if (removeResidue != 0) {
+            reference.keySet().removeIf(key -> Math.floorMod(key, 3) == removeResidue);
+        }
+        assertEquals(reference.size(), map.size(), context);
+        Map<Integer, Table.Row> visited = new java.util.HashMap<>();
+        map.forEach((key, row) -> visited.put(key, row));
+        assertEquals(reference, visited, context);
+    }
+
+    // The case behind the incremental-resize wrap-around bug: a cluster homed at the last slot
+    // wraps to the front of the old arrays while keys elsewhere are still being migrated
+    @Test
+    void intRowMapClusterWrappingDuringResize() {
+        List<Integer> keys = new ArrayList<>();
+        List<Integer> others = new ArrayList<>();
+        for (int key = 0; keys.size() < 20 || others.size() < 29; key++) {
+            if ((IntRowMap.mix(key) & 63) == 63) {
+                keys.add(key);
+            } else {
+                others.add(key);
+            }
+        }
+        keys = new ArrayList<>(keys.subList(0, 20));
+        keys.addAll(others.subList(0, 29));
+        for (int target : keys) {
+            IntRowMap map = new IntRowMap(true);
+            Table.Row row = new Table.Row(new ArrayList<>());
+            for (int key : keys) {
+                map.put(key, row);
+            }
+            assertSame(row, map.get(target), "key " + target);
+            map.put(target, row);
+            assertEquals(keys.size(), map.size(), "key " + target);
+        }
+    }
+}
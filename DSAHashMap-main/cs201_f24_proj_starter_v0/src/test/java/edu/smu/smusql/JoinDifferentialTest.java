@@ -0,0 +1,295 @@
+package edu.smu.smusql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.Test;
+
+// Random joins of users and orders, plain and grouped, checked against a nested-loop reference.
+// Every storage runs typed and untyped, and with no index, a primary key, or a hash or range
+// index on the join column, at sizes that have either side build the hash join, so hash joins and
+// index nested-loop joins from either side all answer the same queries. Orders include ones of no
+// user and, untyped, user ids written with a leading zero, which still join by value.
+class JoinDifferentialTest {
+    private static final String[] STORAGES = {"HEAP", "OFF_HEAP", "SNAPSHOT", "COLUMNAR"};
+    private static final String[] NAMES = {"ann", "bob", "cy", "dee"};
+    private static final String[] OPERATORS = {"=", "<", ">", "<=", ">="};
+    private static final String[] COLUMNS = {"id", "name", "age", "oid", "user_id", "amount"};
+    private static final String NULL = "NULL"; // Key of the group of a null name
+
+    private static final class User {
+        final int id;
+        final String name;
+        final int age;
+
+        User(int id, String name, int age) {
+            this.id = id;
+            this.name = name;
+            this.age = age;
+        }
+    }
+
+    private static final class Order {
+        final int oid;
+        final int userId;
+        final double amount;
+
+        Order(int oid, int userId, double amount) {
+            this.oid = oid;
+            this.userId = userId;
+            this.amount = amount;
+        }
+    }
+
+    // A joined row of the reference: user or order is null where a LEFT JOIN found no match
+    private static final class Pair {
+        final User user;
+        final Order order;
+
+        Pair(User user, Order order) {
+            this.user = user;
+            this.order = order;
+        }
+    }
+
+    @Test
+    void joinsMatchReference() {
+        for (String storage : STORAGES) {
+            for (boolean typed : new boolean[] {false, true}) {
+                for (int indexes = 0; indexes < 4; indexes++) {
+                    for (int[] size : new int[][] {{40, 300}, {300, 40}}) {
+                        String context = storage + (typed ? " typed" : " untyped") + " indexes " + indexes
+                                + " users " + size[0] + " orders " + size[1];
+                        run(new Random(indexes * 31 + size[0]), storage, typed, indexes, size[0], size[1], context);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void run(Random random, String storage, boolean typed, int indexes, int userCount, int orderCount,
+                            String context) {
+        Engine engine = new Engine();
+        String primaryKey = indexes == 1 ? " PRIMARY KEY" : "";
+        engine.executeSQL(typed
+                ? "CREATE TABLE users (id INT" + primaryKey + ", name VARCHAR, age INT) STORAGE " + storage
+                : "CREATE TABLE users (id" + primaryKey + ", name, age) STORAGE " + storage);
+        engine.executeSQL(typed
+                ? "CREATE TABLE orders (oid INT, user_id INT, amount DOUBLE) STORAGE " + storage
+                : "CREATE TABLE orders (oid, user_id, amount) STORAGE " + storage);
+        if (indexes >= 2) {
+            engine.executeSQL("CREATE INDEX orders_user ON orders (user_id)" + (indexes == 3 ? " USING RANGE" : ""));
+        }
+        List<User> users = new ArrayList<>();
+        for (int id = 0; id < userCount; id++) {
+            User user = new User(id, NAMES[random.nextInt(NAMES.length)], 18 + random.nextInt(50));
+            users.add(user);
+            engine.executeSQL("INSERT INTO users VALUES (" + id + ", '" + user.name + "', " + user.age + ")");
+        }
+        List<Order> orders = new ArrayList<>();
+        for (int oid = 0; oid < orderCount; oid++) {
+            Order order = new Order(oid, random.nextInt(userCount * 6 / 5), random.nextInt(400) / 2.0);
+            orders.add(order);
+            String userId = !typed && random.nextInt(10) == 0 ? "0" + order.userId : String.valueOf(order.userId);
+            engine.executeSQL("INSERT INTO orders VALUES (" + oid + ", " + userId + ", " + order.amount + ")");
+        }
+        for (int query = 0; query < 40; query++) {
+            boolean usersLeft = random.nextBoolean();
+            boolean leftJoin = random.nextInt(3) == 0;
+            String where = randomWhere(random, userCount, orderCount);
+            String from = "FROM " + (usersLeft ? "users" : "orders") + (leftJoin ? " LEFT JOIN " : " JOIN ")
+                    + (usersLeft ? "orders" : "users") + " ON users.id = orders.user_id"
+                    + (where.isEmpty() ? "" : " WHERE " + where);
+            List<Pair> expected = new ArrayList<>();
+            Predicate<Pair> matches = reference(where);
+            for (Pair pair : join(users, orders, usersLeft, leftJoin)) {
+                if (matches.test(pair)) {
+                    expected.add(pair);
+                }
+            }
+            if (random.nextBoolean()) {
+                checkSelect(engine, expected, from, context + ": " + from);
+            } else {
+                checkAggregates(engine, expected, from, context + ": " + from);
+            }
+        }
+    }
+
+    // Every pair of a user and an order of theirs, in a nested loop, with the unmatched rows of the
+    // left side for a LEFT JOIN
+    private static List<Pair> join(List<User> users, List<Order> orders, boolean usersLeft, boolean leftJoin) {
+        List<Pair> joined = new ArrayList<>();
+        if (usersLeft) {
+            for (User user : users) {
+                int before = joined.size();
+                for (Order order : orders) {
+                    if (order.userId == user.id) {
+                        joined.add(new Pair(user, order));
+                    }
+                }
+                if (leftJoin && joined.size() == before) {
+                    joined.add(new Pair(user, null));
+                }
+            }
+        } else {
+            for (Order order : orders) {
+                int before = joined.size();
+                for (User user : users) {
+                    if (order.userId == user.id) {
+                        joined.add(new Pair(user, order));
+                    }
+                }
+                if (leftJoin && joined.size() == before) {
+                    joined.add(new Pair(null, order));
+                }
+            }
+        }
+        return joined;
+    }
+
+    // Joined rows as "user id/order id" pairs, sorted, with null for a missing side
+    private static void checkSelect(Engine engine, List<Pair> expected, String from, String context) {
+        List<String> want = new ArrayList<>();
+        for (Pair pair : expected) {
+            want.add((pair.user == null ? null : pair.user.id) + "/" + (pair.order == null ? null : pair.order.oid));
+        }
+        List<String> got = new ArrayList<>();
+        ResultSet result = engine.query("SELECT * " + from);
+        assertEquals(6, result.getColumnNames().size(), context);
+        while (result.next()) {
+            got.add(number(result.getValue("users.id")) + "/" + number(result.getValue("orders.oid")));
+        }
+        want.sort(null);
+        got.sort(null);
+        assertEquals(want, got, context);
+    }
+
+    // COUNT(*), COUNT(oid), SUM(amount) and MAX(age) per user name
+    private static void checkAggregates(Engine engine, List<Pair> expected, String from, String context) {
+        Map<String, List<Object>> want = new TreeMap<>();
+        for (Pair pair : expected) {
+            List<Object> group = want.computeIfAbsent(pair.user == null ? NULL : pair.user.name,
+                    name -> new ArrayList<>(List.of(0L, 0L, NULL, NULL)));
+            group.set(0, (Long) group.get(0) + 1);
+            if (pair.order != null) {
+                group.set(1, (Long) group.get(1) + 1);
+                group.set(2, (group.get(2) == NULL ? 0.0 : (Double) group.get(2)) + pair.order.amount);
+            }
+            if (pair.user != null) {
+                group.set(3, group.get(3) == NULL ? pair.user.age : Math.max((Integer) group.get(3), pair.user.age));
+            }
+        }
+        Map<String, List<Object>> got = new TreeMap<>();
+        ResultSet result = engine.query("SELECT users.name, COUNT(*), COUNT(oid), SUM(amount), MAX(age) " + from + " GROUP BY name");
+        while (result.next()) {
+            String name = result.getString(0);
+            List<Object> group = new ArrayList<>();
+            group.add(result.getLong(1));
+            group.add(result.getLong(2));
+            group.add(result.getValue(3) == null ? NULL : (Object) result.getDouble(3));
+            group.add(result.getValue(4) == null ? NULL : (Object) (int) result.getDouble(4));
+            assertEquals(null, got.put(name == null ? NULL : name.replace("'", ""), group), context + " repeats a group");
+        }
+        assertEquals(want, got, context);
+    }
+
+    // A value read back as an int, whichever way its column stores it; null stays null
+    private static Integer number(Object value) {
+        return value == null ? null : (int) Double.parseDouble(value.toString());
+    }
+
+    // Up to three conditions on either table, some qualified, joined by AND or OR
+    private static String randomWhere(Random random, int users, int orders) {
+        StringBuilder where = new StringBuilder();
+        int conditions = random.nextInt(4);
+        for (int i = 0; i < conditions; i++) {
+            if (i > 0) {
+                where.append(random.nextInt(3) == 0 ? " OR " : " AND ");
+            }
+            String column = COLUMNS[random.nextInt(COLUMNS.length)];
+            if (random.nextBoolean()) {
+                where.append(column.equals("id") || column.equals("name") || column.equals("age") ? "users." : "orders.");
+            }
+            where.append(column).append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ');
+            switch (column) {
+                case "name":
+                    where.append('\'').append(NAMES[random.nextInt(NAMES.length)]).append('\'');
+                    break;
+                case "age":
+                    where.append(18 + random.nextInt(50));
+                    break;
+                case "oid":
+                    where.append(random.nextInt(orders));
+                    break;
+                case "amount":
+                    where.append(random.nextInt(400) / 2.0);
+                    break;
+                default:
+                    where.append(random.nextInt(users));
+                    break;
+            }
+        }
+        return where.toString();
+    }
+
+    // The WHERE clause as a test of reference pairs: AND binds tighter than OR, and a condition on
+    // a missing side is false
+    private static Predicate<Pair> reference(String where) {
+        if (where.isEmpty()) {
+            return pair -> true;
+        }
+        Predicate<Pair> any = pair -> false;
+        for (String group : where.split(" OR ")) {
+            Predicate<Pair> all = pair -> true;
+            for (String condition : group.split(" AND ")) {
+                all = all.and(condition(condition.split(" ", 3)));
+            }
+            any = any.or(all);
+        }
+        return any;
+    }
+
+    private static Predicate<Pair> condition(String[] condition) {
+        String column = condition[0].substring(condition[0].indexOf('.') + 1);
+        String operator = condition[1];
+        String literal = condition[2];
+        return pair -> {
+            if (column.equals("name")) {
+                return pair.user != null && accepts(operator, pair.user.name.compareTo(literal.substring(1, literal.length() - 1)));
+            }
+            Double value = value(pair, column);
+            return value != null && accepts(operator, Double.compare(value, Double.parseDouble(literal)));
+        };
+    }
+
+    private static Double value(Pair pair, String column) {
+        switch (column) {
+            case "id":
+                return pair.user == null ? null : (double) pair.user.id;
+            case "age":
+                return pair.user == null ? null : (double) pair.user.age;
+            case "oid":
+                return pair.order == null ? null : (double) pair.order.oid;
+            case "user_id":
+                return pair.order == null ? null : (double) pair.order.userId;
+            default:
+                return pair.order == null ? null : pair.order.amount;
+        }
+    }
+
+    private static boolean accepts(String operator, int comparison) {
+        switch (operator) {
+            case "=": return comparison == 0;
+            case "<": return comparison < 0;
+            case ">": return comparison > 0;
+            case "<=": return comparison <= 0;
+            default: return comparison >= 0;
+        }
+    }
+}